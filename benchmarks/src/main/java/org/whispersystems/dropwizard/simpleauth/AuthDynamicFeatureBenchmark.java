@@ -0,0 +1,221 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.FeatureContext;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.Auth;
+
+/**
+ * Startup cost of {@link AuthDynamicFeature#configure} across a large synthetic resource set:
+ * {@code resourceMethods} methods spread over twelve principal types, with required, optional,
+ * unauthenticated and interface-typed {@code @Auth} parameters.  Only one principal type
+ * implements the interface, since a supertype shared by several filters is ambiguous.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthDynamicFeatureBenchmark {
+
+  @Param({"500"})
+  int resourceMethods;
+
+  private AuthFilter[]   filters;
+  private ResourceInfo[] resources;
+  private FeatureContext context;
+
+  @Setup
+  public void setup() {
+    Class<?>[] principalTypes = {Principal0.class, Principal1.class, Principal2.class, Principal3.class,
+                                 Principal4.class, Principal5.class, Principal6.class, Principal7.class,
+                                 Principal8.class, Principal9.class, Principal10.class, Principal11.class};
+
+    filters = new AuthFilter[principalTypes.length];
+
+    for (int i=0;i<principalTypes.length;i++) {
+      filters[i] = filter(principalTypes[i]);
+    }
+
+    Method[] methods = SyntheticResource.class.getDeclaredMethods();
+
+    resources = new ResourceInfo[resourceMethods];
+
+    for (int i=0;i<resourceMethods;i++) {
+      resources[i] = new SyntheticResourceInfo(methods[i % methods.length]);
+    }
+
+    context = new CountingFeatureContext();
+  }
+
+  private static <P> AuthFilter<?, P> filter(Class<P> principalType) {
+    return new BasicCredentialAuthFilter.Builder<P>().setAuthenticator(credentials -> Optional.empty())
+                                                     .setPrincipal(principalType)
+                                                     .buildAuthFilter();
+  }
+
+  @Benchmark
+  public AuthDynamicFeature configure() {
+    AuthDynamicFeature feature = new AuthDynamicFeature(filters);
+
+    for (ResourceInfo resource : resources) {
+      feature.configure(resource, context);
+    }
+
+    return feature;
+  }
+
+  public interface Named {}
+
+  public static class Principal0 implements Named {}
+  public static class Principal1 {}
+  public static class Principal2 {}
+  public static class Principal3 {}
+  public static class Principal4 {}
+  public static class Principal5 {}
+  public static class Principal6 {}
+  public static class Principal7 {}
+  public static class Principal8 {}
+  public static class Principal9 {}
+  public static class Principal10 {}
+  public static class Principal11 {}
+
+  @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+  public static class SyntheticResource {
+    public void required0(@Auth Principal0 principal) {}
+    public void optional0(@Auth Optional<Principal0> principal) {}
+    public void anonymous0(String value) {}
+    public void required1(@Auth Principal1 principal) {}
+    public void optional1(@Auth Optional<Principal1> principal) {}
+    public void anonymous1(String value) {}
+    public void required2(@Auth Principal2 principal) {}
+    public void optional2(@Auth Optional<Principal2> principal) {}
+    public void anonymous2(String value) {}
+    public void required3(@Auth Principal3 principal) {}
+    public void optional3(@Auth Optional<Principal3> principal) {}
+    public void anonymous3(String value) {}
+    public void required4(@Auth Principal4 principal) {}
+    public void optional4(@Auth Optional<Principal4> principal) {}
+    public void anonymous4(String value) {}
+    public void required5(@Auth Principal5 principal) {}
+    public void optional5(@Auth Optional<Principal5> principal) {}
+    public void anonymous5(String value) {}
+    public void required6(@Auth Principal6 principal) {}
+    public void optional6(@Auth Optional<Principal6> principal) {}
+    public void anonymous6(String value) {}
+    public void required7(@Auth Principal7 principal) {}
+    public void optional7(@Auth Optional<Principal7> principal) {}
+    public void anonymous7(String value) {}
+    public void required8(@Auth Principal8 principal) {}
+    public void optional8(@Auth Optional<Principal8> principal) {}
+    public void anonymous8(String value) {}
+    public void required9(@Auth Principal9 principal) {}
+    public void optional9(@Auth Optional<Principal9> principal) {}
+    public void anonymous9(String value) {}
+    public void required10(@Auth Principal10 principal) {}
+    public void optional10(@Auth Optional<Principal10> principal) {}
+    public void anonymous10(String value) {}
+    public void required11(@Auth Principal11 principal) {}
+    public void optional11(@Auth Optional<Principal11> principal) {}
+    public void anonymous11(String value) {}
+    public void named(@Auth Named principal) {}
+  }
+
+  private static class SyntheticResourceInfo implements ResourceInfo {
+    private final Method method;
+
+    SyntheticResourceInfo(Method method) {
+      this.method = method;
+    }
+
+    @Override
+    public Method getResourceMethod() {
+      return method;
+    }
+
+    @Override
+    public Class<?> getResourceClass() {
+      return SyntheticResource.class;
+    }
+  }
+
+  private static class CountingFeatureContext implements FeatureContext {
+    private long registrations;
+
+    @Override
+    public Configuration getConfiguration() {
+      return null;
+    }
+
+    @Override
+    public FeatureContext property(String name, Object value) {
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Class<?> componentClass) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Class<?> componentClass, int priority) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Class<?> componentClass, Class<?>... contracts) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Class<?> componentClass, Map<Class<?>, Integer> contracts) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Object component) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Object component, int priority) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Object component, Class<?>... contracts) {
+      registrations++;
+      return this;
+    }
+
+    @Override
+    public FeatureContext register(Object component, Map<Class<?>, Integer> contracts) {
+      registrations++;
+      return this;
+    }
+  }
+}
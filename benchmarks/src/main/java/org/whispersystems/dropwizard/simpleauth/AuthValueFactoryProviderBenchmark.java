@@ -0,0 +1,84 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.Auth;
+
+/**
+ * Full in-memory Jersey dispatch, including the auth filter and {@link AuthValueFactoryProvider}
+ * injection.  The {@code anonymous} endpoint has no {@code @Auth} parameter and gives the
+ * baseline cost of dispatch without authentication.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthValueFactoryProviderBenchmark {
+
+  @Param({"anonymous", "required", "optional"})
+  String endpoint;
+
+  private ApplicationHandler handler;
+
+  @Setup
+  public void setup() {
+    ResourceConfig config = new ResourceConfig();
+    config.register(new AuthDynamicFeature(BenchmarkRequests.filter()));
+    config.register(new AuthValueFactoryProvider.Binder());
+    config.register(new BenchmarkResource());
+
+    handler = new ApplicationHandler(config);
+  }
+
+  @Benchmark
+  public int dispatch() throws Exception {
+    ContainerResponse response = handler.apply(BenchmarkRequests.request(endpoint, BenchmarkRequests.VALID_HEADER)).get();
+
+    if (response.getStatus() != 200) {
+      throw new IllegalStateException("Unexpected status: " + response.getStatus());
+    }
+
+    return response.getStatus();
+  }
+
+  @Path("/")
+  public static class BenchmarkResource {
+    @GET
+    @Path("anonymous")
+    public String anonymous() {
+      return "anonymous";
+    }
+
+    @GET
+    @Path("required")
+    public String required(@Auth String user) {
+      return user;
+    }
+
+    @GET
+    @Path("optional")
+    public String optional(@Auth Optional<String> user) {
+      return user.orElse("anonymous");
+    }
+  }
+}
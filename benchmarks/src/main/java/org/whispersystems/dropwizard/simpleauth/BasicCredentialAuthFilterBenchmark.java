@@ -0,0 +1,86 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.glassfish.jersey.server.ContainerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BasicCredentialAuthFilter#filter} for valid, invalid and malformed headers, with each
+ * invocation authenticating from scratch, and for a request an earlier filter has already
+ * authenticated.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasicCredentialAuthFilterBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Filter {
+    BasicCredentialAuthFilter<String> filter;
+
+    @Setup
+    public void setup() {
+      filter = BenchmarkRequests.filter();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Request {
+    @Param({"valid", "invalid", "malformed"})
+    String header;
+
+    ContainerRequest request;
+    SecurityContext  securityContext;
+
+    @Setup
+    public void setup() {
+      request         = BenchmarkRequests.request("resource", BenchmarkRequests.header(header));
+      securityContext = request.getSecurityContext();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class AuthenticatedRequest {
+    ContainerRequest request;
+
+    @Setup
+    public void setup() throws IOException {
+      request = BenchmarkRequests.request("resource", BenchmarkRequests.VALID_HEADER);
+      BenchmarkRequests.filter().filter(request);
+    }
+  }
+
+  @Benchmark
+  public Object reused(Filter filter, AuthenticatedRequest request) throws IOException {
+    filter.filter.filter(request.request);
+    return request.request.getSecurityContext();
+  }
+
+  @Benchmark
+  public Object filter(Filter filter, Request request) throws IOException {
+    BenchmarkRequests.reset(request.request, request.securityContext);
+
+    try {
+      filter.filter.filter(request.request);
+      return request.request.getSecurityContext();
+    } catch (WebApplicationException e) {
+      return e;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.io.BaseEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+
+/**
+ * Header parsing alone: the in-place {@link BasicCredentialsParser} against the original
+ * substring and {@link BaseEncoding} approach.  Run with {@code -prof gc} to compare
+ * allocation per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BasicCredentialsParserBenchmark {
+
+  private final String header = BenchmarkRequests.VALID_HEADER;
+  private final String prefix = "Basic";
+
+  @Benchmark
+  public BasicCredentials inPlace() {
+    int offset = AuthorizationHeaders.credentialsOffset(header, prefix);
+    return offset > 0 ? BasicCredentialsParser.parse(header, offset) : null;
+  }
+
+  @Benchmark
+  public BasicCredentials substringAndBaseEncoding() {
+    int space = header.indexOf(' ');
+
+    if (space > 0 && prefix.equalsIgnoreCase(header.substring(0, space))) {
+      String decoded = new String(BaseEncoding.base64().decode(header.substring(space + 1)), StandardCharsets.UTF_8);
+      int    i       = decoded.indexOf(':');
+
+      if (i > 0) {
+        return new BasicCredentials(decoded.substring(0, i), decoded.substring(i + 1));
+      }
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,78 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.SecurityContext;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+
+/**
+ * In-memory Jersey requests and fixtures shared by the benchmarks.
+ */
+final class BenchmarkRequests {
+
+  static final String VALID_HEADER     = basic("user", "password");
+  static final String INVALID_HEADER   = basic("user", "wrong");
+  static final String MALFORMED_HEADER = "Basic dXNlcj*wYXNzd29yZA=";
+
+  private BenchmarkRequests() {}
+
+  static ContainerRequest request(String path, String authorization) {
+    ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+                                                    URI.create("http://localhost/" + path),
+                                                    "GET", null, new MapPropertiesDelegate());
+
+    if (authorization != null) {
+      request.header(HttpHeaders.AUTHORIZATION, authorization);
+    }
+
+    return request;
+  }
+
+  /**
+   * Undoes what a previous invocation's filter left on a reused request, so every invocation
+   * authenticates from scratch rather than taking the already-authenticated path.
+   */
+  static void reset(ContainerRequest request, SecurityContext securityContext) {
+    request.removeProperty(AuthFilter.PRINCIPAL_PROPERTY);
+    request.setSecurityContext(securityContext);
+  }
+
+  static String header(String kind) {
+    switch (kind) {
+      case "valid":     return VALID_HEADER;
+      case "invalid":   return INVALID_HEADER;
+      case "malformed": return MALFORMED_HEADER;
+      case "missing":   return null;
+      default:          throw new IllegalArgumentException(kind);
+    }
+  }
+
+  static String basic(String username, String password) {
+    return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+  }
+
+  static BasicCredentialAuthFilter<String> filter() {
+    return new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new UserAuthenticator())
+                                                          .setPrincipal(String.class)
+                                                          .setRealm("benchmark")
+                                                          .buildAuthFilter();
+  }
+
+  static class UserAuthenticator implements Authenticator<BasicCredentials, String> {
+    @Override
+    public Optional<String> authenticate(BasicCredentials credentials) {
+      if (credentials.getUsername().equals("user") && credentials.getPassword().equals("password")) {
+        return Optional.of("user");
+      }
+
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one password verification per algorithm, at commonly recommended production
+ * parameters.  Use the results to size the {@link PasswordVerifier} pool: a core sustains
+ * roughly {@code 1000 / score} verifications per second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PasswordHasherBenchmark {
+
+  @Param({"pbkdf2", "bcrypt", "scrypt", "argon2id"})
+  private String algorithm;
+
+  private PasswordHasher hasher;
+  private String         encoded;
+
+  @Setup
+  public void setup() {
+    switch (algorithm) {
+      case "pbkdf2":   hasher = new Pbkdf2PasswordHasher(600000);          break;
+      case "bcrypt":   hasher = new BCryptPasswordHasher(12);              break;
+      case "scrypt":   hasher = new SCryptPasswordHasher(17, 8, 1);        break;
+      case "argon2id": hasher = new Argon2PasswordHasher(19456, 2, 1);     break;
+      default:         throw new IllegalArgumentException(algorithm);
+    }
+
+    encoded = hasher.hash("correct horse battery staple");
+  }
+
+  @Benchmark
+  public boolean verify() {
+    return hasher.verify("correct horse battery staple", encoded);
+  }
+}
@@ -0,0 +1,63 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.glassfish.jersey.server.ContainerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code Optional<@Auth P>} path, where the auth filter is wrapped in a
+ * {@link WebApplicationExceptionCatchingFilter}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebApplicationExceptionCatchingFilterBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Filter {
+    WebApplicationExceptionCatchingFilter filter;
+
+    @Setup
+    public void setup() {
+      filter = new WebApplicationExceptionCatchingFilter(BenchmarkRequests.filter());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Request {
+    @Param({"valid", "missing", "invalid", "malformed"})
+    String header;
+
+    ContainerRequest request;
+    SecurityContext  securityContext;
+
+    @Setup
+    public void setup() {
+      request         = BenchmarkRequests.request("resource", BenchmarkRequests.header(header));
+      securityContext = request.getSecurityContext();
+    }
+  }
+
+  @Benchmark
+  public Object filter(Filter filter, Request request) throws IOException {
+    BenchmarkRequests.reset(request.request, request.securityContext);
+
+    filter.filter.filter(request.request);
+    return request.request.getSecurityContext();
+  }
+}
@@ -0,0 +1,99 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Argon2id password hashes in the standard {@code $argon2id$v=19$m=M,t=T,p=P$salt$hash} form.
+ * Requires the optional {@code org.bouncycastle:bcprov-jdk15on} dependency.
+ */
+public class Argon2PasswordHasher implements PasswordHasher {
+
+  private static final String PREFIX      = "$argon2id$";
+  private static final int    SALT_LENGTH = 16;
+  private static final int    KEY_LENGTH  = 32;
+
+  private final int memoryKb;
+  private final int iterations;
+  private final int parallelism;
+
+  /**
+   * @param memoryKb    the memory cost for new hashes, in kibibytes
+   * @param iterations  the time cost for new hashes
+   * @param parallelism the number of lanes for new hashes
+   */
+  public Argon2PasswordHasher(int memoryKb, int iterations, int parallelism) {
+    Preconditions.checkArgument(memoryKb >= 8 * parallelism && iterations > 0 && parallelism > 0, "Invalid argon2 parameters");
+    this.memoryKb    = memoryKb;
+    this.iterations  = iterations;
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  public boolean supports(String encodedHash) {
+    return encodedHash.startsWith(PREFIX);
+  }
+
+  @Override
+  public String hash(String password) {
+    byte[] salt = PasswordHashes.salt(SALT_LENGTH);
+    return PREFIX + "v=19$m=" + memoryKb + ",t=" + iterations + ",p=" + parallelism + "$" + PasswordHashes.encode(salt) + "$" +
+           PasswordHashes.encode(derive(password, salt, memoryKb, iterations, parallelism, KEY_LENGTH));
+  }
+
+  @Override
+  public boolean verify(String password, String encodedHash) {
+    String[] parts = encodedHash.split("\\$");
+
+    if (parts.length != 6 || !parts[2].equals("v=19")) {
+      return false;
+    }
+
+    int memoryKb    = PasswordHashes.parameter(parts[3], "m");
+    int iterations  = PasswordHashes.parameter(parts[3], "t");
+    int parallelism = PasswordHashes.parameter(parts[3], "p");
+
+    if (parallelism <= 0 || memoryKb < 8 * parallelism || iterations <= 0) {
+      return false;
+    }
+
+    try {
+      byte[] salt     = PasswordHashes.decode(parts[4]);
+      byte[] expected = PasswordHashes.decode(parts[5]);
+
+      return PasswordHashes.constantTimeEquals(derive(password, salt, memoryKb, iterations, parallelism, expected.length), expected);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean needsRehash(String encodedHash) {
+    String[] parts = encodedHash.split("\\$");
+
+    return parts.length != 6                                          ||
+           PasswordHashes.parameter(parts[3], "m") < memoryKb         ||
+           PasswordHashes.parameter(parts[3], "t") < iterations       ||
+           PasswordHashes.parameter(parts[3], "p") < parallelism;
+  }
+
+  private static byte[] derive(String password, byte[] salt, int memoryKb, int iterations, int parallelism, int length) {
+    Argon2Parameters parameters = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+        .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+        .withMemoryAsKB(memoryKb)
+        .withIterations(iterations)
+        .withParallelism(parallelism)
+        .withSalt(salt)
+        .build();
+
+    Argon2BytesGenerator generator = new Argon2BytesGenerator();
+    generator.init(parameters);
+
+    byte[] result = new byte[length];
+    generator.generateBytes(password.getBytes(StandardCharsets.UTF_8), result);
+    return result;
+  }
+}
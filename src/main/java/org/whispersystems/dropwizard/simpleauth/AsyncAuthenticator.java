@@ -0,0 +1,81 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An interface for classes which authenticate user-provided credentials without blocking the
+ * calling thread.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public interface AsyncAuthenticator<C, P> {
+  /**
+   * Given a set of user-provided credentials, return a stage which completes with an optional
+   * principal.
+   *
+   * The stage completes with {@code Optional.of(p)} for valid credentials, with
+   * {@code Optional.empty()} for invalid credentials, or exceptionally with an
+   * {@link AuthenticationException} if the credentials cannot be authenticated due to an
+   * underlying error.
+   *
+   * @param credentials a set of user-provided credentials
+   * @return a stage completing with either an authenticated principal or an empty optional
+   */
+  CompletionStage<Optional<P>> authenticate(C credentials);
+
+  /**
+   * Adapts a blocking {@link Authenticator} by running it on the given executor, for example a
+   * bounded pool dedicated to credential lookups.  Cancelling the returned stage's future
+   * interrupts the lookup if it is still running.  If the executor rejects a lookup, the stage
+   * completes exceptionally with an {@link AuthenticationUnavailableException}.
+   *
+   * @param authenticator the blocking authenticator
+   * @param executor      the executor lookups are run on
+   * @return an asynchronous view of the authenticator
+   */
+  static <C, P> AsyncAuthenticator<C, P> offload(Authenticator<C, P> authenticator, Executor executor) {
+    Preconditions.checkNotNull(authenticator, "Authenticator is not set");
+    Preconditions.checkNotNull(executor, "Executor is not set");
+
+    return credentials -> {
+      CompletableFuture<Optional<P>> result = new CompletableFuture<>();
+      FutureTask<Optional<P>>        task   = new FutureTask<Optional<P>>(() -> authenticator.authenticate(credentials)) {
+        @Override
+        protected void done() {
+          if (isCancelled()) return;
+
+          try {
+            result.complete(get());
+          } catch (ExecutionException e) {
+            result.completeExceptionally(e.getCause());
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        }
+      };
+
+      result.whenComplete((principal, error) -> {
+        if (result.isCancelled()) task.cancel(true);
+      });
+
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(new AuthenticationUnavailableException("Authentication executor is saturated"));
+      }
+
+      return result;
+    };
+  }
+}
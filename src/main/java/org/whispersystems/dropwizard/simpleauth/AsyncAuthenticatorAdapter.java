@@ -0,0 +1,73 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * Presents an {@link AsyncAuthenticator} as an {@link Authenticator}, waiting a bounded time for
+ * each authentication to complete.
+ *
+ * The calling thread blocks while it waits, so this bounds the time a request spends on a slow
+ * lookup rather than freeing its thread.  An authentication which times out is cancelled, which
+ * interrupts it if it was started by {@link AsyncAuthenticator#offload(Authenticator, Executor)}.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class AsyncAuthenticatorAdapter<C, P> implements Authenticator<C, P> {
+
+  private final AsyncAuthenticator<C, P> underlying;
+  private final long                     timeoutNanos;
+
+  /**
+   * @param underlying the asynchronous authenticator
+   * @param timeout    how long to wait for an authentication to complete
+   * @param unit       the unit of {@code timeout}
+   */
+  public AsyncAuthenticatorAdapter(AsyncAuthenticator<C, P> underlying, long timeout, TimeUnit unit) {
+    Preconditions.checkNotNull(underlying, "Underlying AsyncAuthenticator is not set");
+    Preconditions.checkArgument(timeout > 0, "Timeout must be positive");
+
+    this.underlying   = underlying;
+    this.timeoutNanos = unit.toNanos(timeout);
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    CompletableFuture<Optional<P>> result = underlying.authenticate(credentials).toCompletableFuture();
+
+    try {
+      return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      throw new AuthenticationException("Timed out waiting for authentication");
+    } catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new AuthenticationException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+
+      if (cause instanceof AuthenticationException) throw (AuthenticationException) cause;
+      if (cause instanceof RuntimeException)        throw (RuntimeException) cause;
+      throw new AuthenticationException(cause);
+    }
+  }
+
+  public AsyncAuthenticator<C, P> getUnderlying() {
+    return underlying;
+  }
+}
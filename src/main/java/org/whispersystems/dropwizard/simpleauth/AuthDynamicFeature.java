@@ -8,63 +8,108 @@ import javax.ws.rs.core.FeatureContext;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.dropwizard.auth.Auth;
 
 public class AuthDynamicFeature implements DynamicFeature {
 
-  private AuthFilter[] authFilters;
+  private final AuthFilter[]                                          authFilters;
+  private final Map<Type, AuthFilter>                                 filtersByType   = new ConcurrentHashMap<>();
+  private final Map<AuthFilter, WebApplicationExceptionCatchingFilter> optionalFilters = new IdentityHashMap<>();
 
   public AuthDynamicFeature(AuthFilter... authFilters) {
     this.authFilters = authFilters;
+
+    for (AuthFilter filter : authFilters) {
+      Type principalType = filter.principalType;
+
+      if (principalType != null && filter.supports(principalType)) {
+        filtersByType.putIfAbsent(principalType, filter);
+      }
+
+      optionalFilters.put(filter, new WebApplicationExceptionCatchingFilter(filter));
+    }
   }
 
   @Override
   public void configure(ResourceInfo resourceInfo, FeatureContext context) {
-    AnnotatedMethod annotatedMethod       = new AnnotatedMethod(resourceInfo.getResourceMethod());
-    Annotation[][]  parameterAnnotations  = annotatedMethod.getParameterAnnotations();
-    Class<?>[]      parameterTypes        = annotatedMethod.getParameterTypes      ();
-    Type[]          parameterGenericTypes = annotatedMethod.getGenericParameterTypes();
-
-    verifyAuthAnnotations(parameterAnnotations);
+    AnnotatedMethod annotatedMethod      = new AnnotatedMethod(resourceInfo.getResourceMethod());
+    Annotation[][]  parameterAnnotations = annotatedMethod.getParameterAnnotations();
+    int             authParameter        = -1;
 
     for (int i=0;i<parameterAnnotations.length;i++) {
       for (Annotation annotation : parameterAnnotations[i]) {
         if (annotation instanceof Auth) {
-          Type parameterType = parameterTypes[i];
-
-          if (parameterType == Optional.class) {
-            parameterType = ((ParameterizedType)parameterGenericTypes[i]).getActualTypeArguments()[0];
-            context.register(new WebApplicationExceptionCatchingFilter(getFilterFor(parameterType)));
-          } else {
-            context.register(getFilterFor(parameterType));
+          if (authParameter != -1) {
+            throw new IllegalArgumentException("Only one @Auth tag supported per resource method!");
           }
+
+          authParameter = i;
         }
       }
     }
+
+    if (authParameter == -1) {
+      return;
+    }
+
+    Type parameterType = annotatedMethod.getParameterTypes()[authParameter];
+
+    if (parameterType == Optional.class) {
+      parameterType = ((ParameterizedType)annotatedMethod.getGenericParameterTypes()[authParameter]).getActualTypeArguments()[0];
+      context.register(optionalFilters.get(getFilterFor(parameterType)));
+    } else {
+      context.register(getFilterFor(parameterType));
+    }
   }
 
+  /**
+   * Resolves the filter for a principal type, preferring a filter which {@link
+   * AuthFilter#supports supports} the type exactly, then the only filter whose principal type is
+   * a subtype or implementation of it.  {@code Object}, or a supertype shared by several filters'
+   * principal types, is rejected as ambiguous.  Resolutions are memoized, so each distinct type
+   * is only matched against the filter list once.
+   */
   private AuthFilter getFilterFor(Type parameterType) {
+    AuthFilter filter = filtersByType.get(parameterType);
+
+    if (filter == null) {
+      filter = resolveFilterFor(parameterType);
+      filtersByType.put(parameterType, filter);
+    }
+
+    return filter;
+  }
+
+  private AuthFilter resolveFilterFor(Type parameterType) {
     for (AuthFilter filter : authFilters) {
       if (filter.supports(parameterType)) return filter;
     }
 
-    throw new IllegalArgumentException("No authenticator for type: " + parameterType);
-  }
+    if (parameterType instanceof Class && parameterType != Object.class) {
+      AuthFilter match = null;
 
-  private void verifyAuthAnnotations(Annotation[][] parameterAnnotations) {
-    int authCount = 0;
+      for (AuthFilter filter : authFilters) {
+        if (filter.principalType != null && ((Class<?>) parameterType).isAssignableFrom(filter.principalType)) {
+          if (match != null && match.principalType != filter.principalType) {
+            throw new IllegalArgumentException("Ambiguous authenticator for type: " + parameterType + " (" +
+                                               match.principalType.getName() + ", " + filter.principalType.getName() + ")");
+          }
 
-    for (Annotation[] annotations : parameterAnnotations) {
-      for (Annotation annotation : annotations) {
-        if (annotation instanceof Auth) authCount++;
+          if (match == null) match = filter;
+        }
       }
-    }
 
-    if (authCount > 1) {
-      throw new IllegalArgumentException("Only one @Auth tag supported per resource method!");
+      if (match != null) {
+        return match;
+      }
     }
+
+    throw new IllegalArgumentException("No authenticator for type: " + parameterType);
   }
 
 }
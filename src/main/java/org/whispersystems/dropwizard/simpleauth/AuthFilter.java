@@ -1,31 +1,365 @@
 package org.whispersystems.dropwizard.simpleauth;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilderSpec;
 
 import javax.annotation.Priority;
+import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.Priorities;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.SecurityContext;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.DefaultUnauthorizedHandler;
 import io.dropwizard.auth.UnauthorizedHandler;
 
 @Priority(Priorities.AUTHENTICATION)
 public abstract class AuthFilter<C, P> implements ContainerRequestFilter {
 
+  /**
+   * The request property an authenticated principal is stored under, so that it can be
+   * injected without going through the request's {@link SecurityContext}.
+   */
+  public static final String PRINCIPAL_PROPERTY = AuthFilter.class.getName() + ".principal";
+
   protected String              prefix;
   protected String              realm;
   protected Authenticator<C, P> authenticator;
   protected Class<P>            principalType;
+  protected Authorizer<P>       authorizer;
   protected UnauthorizedHandler unauthorizedHandler = new DefaultUnauthorizedHandler();
 
+  private final LongAdder reused = new LongAdder();
+
+  AuthFilterMetrics                         metrics;
+  AuthListener                              listener;
+  Predicate<? super C>                      credentialPreFilter;
+  AuthRateLimiter                           credentialRateLimiter;
+  AuthRateLimiter                           remoteAddressRateLimiter;
+  Function<ContainerRequestContext, String> remoteAddressResolver;
+
+  /**
+   * Authenticates the request, setting its security context if the credentials are valid.
+   * Unlike {@link #filter(ContainerRequestContext)}, rejections are reported by value rather
+   * than by exception, which is what an optional {@code @Auth} parameter wants.
+   *
+   * A request which an earlier filter has already authenticated as this filter's principal type
+   * is accepted as it is, without parsing or authenticating its credentials again.
+   *
+   * @param requestContext the request
+   * @return the outcome of authenticating the request
+   * @throws IOException if an I/O error occurs
+   */
+  public final AuthResult authenticate(ContainerRequestContext requestContext) throws IOException {
+    if (listener == null) {
+      return authenticateOnce(requestContext);
+    }
+
+    listener.onStart(AuthStage.REQUEST, principalType, realm);
+
+    long       start  = System.nanoTime();
+    AuthResult result = AuthResult.ERROR;
+
+    try {
+      return result = authenticateOnce(requestContext);
+    } finally {
+      listener.onEnd(AuthStage.REQUEST, principalType, realm, System.nanoTime() - start, result);
+    }
+  }
+
+  private AuthResult authenticateOnce(ContainerRequestContext requestContext) throws IOException {
+    if (isAlreadyAuthenticated(requestContext)) {
+      reused.increment();
+      if (metrics != null) metrics.markReused();
+      return AuthResult.AUTHENTICATED;
+    }
+
+    String     remoteAddress = remoteAddressRateLimiter != null ? remoteAddressResolver.apply(requestContext) : null;
+    AuthResult result;
+
+    if (remoteAddress != null && remoteAddressRateLimiter.isBlocked(remoteAddress)) {
+      result = AuthResult.THROTTLED;
+    } else {
+      result = authenticateRequest(requestContext);
+
+      if (remoteAddress != null && result == AuthResult.INVALID_CREDENTIALS) {
+        remoteAddressRateLimiter.recordFailure(remoteAddress);
+      }
+    }
+
+    if (metrics != null) metrics.mark(result);
+
+    return result;
+  }
+
+  private boolean isAlreadyAuthenticated(ContainerRequestContext requestContext) {
+    if (principalType == null) {
+      return false;
+    }
+
+    if (principalType.isInstance(requestContext.getProperty(PRINCIPAL_PROPERTY))) {
+      return true;
+    }
+
+    SecurityContext securityContext = requestContext.getSecurityContext();
+
+    if (securityContext instanceof AuthSecurityContext &&
+        principalType.isInstance(((AuthSecurityContext<?>) securityContext).getAuthenticated()))
+    {
+      requestContext.setProperty(PRINCIPAL_PROPERTY, ((AuthSecurityContext<?>) securityContext).getAuthenticated());
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Extracts credentials from the request and authenticates them, setting the request's
+   * security context on success.  Implementations should call
+   * {@link #authenticateCredentials(Object)} rather than the authenticator directly.
+   *
+   * Subclasses written before this method existed, which override
+   * {@link #filter(ContainerRequestContext)} instead, should extend {@link LegacyAuthFilter}.
+   *
+   * @param requestContext the request
+   * @return the outcome of authenticating the request
+   * @throws IOException if an I/O error occurs
+   */
+  protected abstract AuthResult authenticateRequest(ContainerRequestContext requestContext) throws IOException;
+
+  /**
+   * Passes credentials to the authenticator, recording its latency.  Credentials which fail the
+   * builder's pre-filter are rejected without calling the authenticator, and those whose
+   * {@link #getRateLimitKey(Object) rate limit key} has failed too often are refused with an
+   * {@link AuthenticationThrottledException}.
+   *
+   * @param credentials the credentials extracted from the request
+   * @return the authenticated principal, or an empty optional
+   * @throws AuthenticationException if the authenticator fails or the credentials are throttled
+   */
+  protected Optional<P> authenticateCredentials(C credentials) throws AuthenticationException {
+    if (credentialPreFilter != null && !credentialPreFilter.test(credentials)) {
+      return Optional.empty();
+    }
+
+    String key = credentialRateLimiter != null ? getRateLimitKey(credentials) : null;
+
+    if (key == null) {
+      return callAuthenticator(credentials);
+    }
+
+    if (credentialRateLimiter.isBlocked(key)) {
+      throw new AuthenticationThrottledException("Too many failed attempts");
+    }
+
+    Optional<P> principal = callAuthenticator(credentials);
+
+    if (principal.isPresent()) credentialRateLimiter.reset(key);
+    else                       credentialRateLimiter.recordFailure(key);
+
+    return principal;
+  }
+
+  /**
+   * @param e an exception thrown by the authenticator
+   * @return {@link AuthResult#UNAVAILABLE} if the authenticator is shedding load,
+   *         {@link AuthResult#THROTTLED} if the credentials are rate limited, otherwise
+   *         {@link AuthResult#ERROR}
+   */
+  protected static AuthResult errorResult(AuthenticationException e) {
+    if (e instanceof AuthenticationUnavailableException) return AuthResult.UNAVAILABLE;
+    if (e instanceof AuthenticationThrottledException)   return AuthResult.THROTTLED;
+
+    return AuthResult.ERROR;
+  }
+
+  /**
+   * @param credentials the credentials extracted from the request
+   * @return the key failed attempts with these credentials are throttled under, such as a
+   *         username, or {@code null} if they aren't throttled
+   */
+  protected String getRateLimitKey(C credentials) {
+    return null;
+  }
+
+  private Optional<P> callAuthenticator(C credentials) throws AuthenticationException {
+    return authenticateWith(authenticator, credentials);
+  }
+
+  /**
+   * Calls a secondary authenticator, such as one for session tickets, with the same latency
+   * metrics and listener callbacks as the filter's own authenticator.
+   *
+   * @param authenticator the authenticator to call
+   * @param credentials   the credentials to pass it
+   * @param <T>           the type of credentials it accepts
+   * @return the authenticated principal, or an empty optional
+   * @throws AuthenticationException if the authenticator fails
+   */
+  protected <T> Optional<P> authenticateWith(Authenticator<T, P> authenticator, T credentials) throws AuthenticationException {
+    if (metrics == null && listener == null) {
+      return authenticator.authenticate(credentials);
+    }
+
+    if (listener != null) listener.onStart(AuthStage.AUTHENTICATOR, principalType, realm);
+
+    long       start  = metrics != null ? metrics.start() : System.nanoTime();
+    AuthResult result = AuthResult.ERROR;
+
+    try {
+      Optional<P> principal = authenticator.authenticate(credentials);
+      result = principal.isPresent() ? AuthResult.AUTHENTICATED : AuthResult.INVALID_CREDENTIALS;
+      return principal;
+    } catch (AuthenticationException e) {
+      result = errorResult(e);
+      throw e;
+    } finally {
+      if (metrics != null)  metrics.stop(start);
+      if (listener != null) listener.onEnd(AuthStage.AUTHENTICATOR, principalType, realm, System.nanoTime() - start, result);
+    }
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    AuthResult result = authenticate(requestContext);
+
+    if (result == AuthResult.AUTHENTICATED) return;
+
+    if (listener == null) {
+      throw rejection(result);
+    }
+
+    listener.onStart(AuthStage.REJECTION, principalType, realm);
+
+    long                    start     = System.nanoTime();
+    WebApplicationException rejection = rejection(result);
+
+    listener.onEnd(AuthStage.REJECTION, principalType, realm, System.nanoTime() - start, result);
+    throw rejection;
+  }
+
+  private WebApplicationException rejection(AuthResult result) {
+    if (result == AuthResult.ERROR)       return new InternalServerErrorException();
+    if (result == AuthResult.THROTTLED)   return tooManyAttempts();
+    if (result == AuthResult.UNAVAILABLE) return new ServiceUnavailableException();
+
+    return unauthorized();
+  }
+
+  /**
+   * Marks the request as authenticated by the given principal, setting both its security
+   * context and its {@link #PRINCIPAL_PROPERTY}.
+   *
+   * @param requestContext the request
+   * @param principal      the authenticated principal
+   */
+  protected void setAuthenticatedPrincipal(ContainerRequestContext requestContext, P principal) {
+    requestContext.setSecurityContext(newSecurityContext(requestContext, principal));
+    requestContext.setProperty(PRINCIPAL_PROPERTY, principal);
+  }
+
+  /**
+   * Builds the security context for an authenticated request, carrying over whether the
+   * request arrived over a secure channel.
+   *
+   * @param requestContext the request
+   * @param principal      the authenticated principal
+   * @return a new security context
+   */
+  protected AuthSecurityContext<P> newSecurityContext(ContainerRequestContext requestContext, P principal) {
+    SecurityContext current = requestContext.getSecurityContext();
+    boolean         secure  = current != null && current.isSecure();
+
+    return new AuthSecurityContext<>(principal, secure, getAuthenticationScheme(), authorizer);
+  }
+
+  /**
+   * @return the scheme reported by {@link SecurityContext#getAuthenticationScheme()}
+   */
+  protected String getAuthenticationScheme() {
+    return prefix;
+  }
+
+  /**
+   * @return the exception a required {@code @Auth} parameter fails with when the request is
+   *         not authenticated
+   */
+  protected WebApplicationException unauthorized() {
+    return new UnauthorizedException(unauthorizedHandler.buildResponse(prefix, realm));
+  }
+
+  /**
+   * @return the exception a required {@code @Auth} parameter fails with when the client is
+   *         throttled
+   */
+  protected WebApplicationException tooManyAttempts() {
+    long retryAfter = -1;
+
+    if (remoteAddressRateLimiter != null) retryAfter = remoteAddressRateLimiter.getRetryAfter(TimeUnit.SECONDS);
+    if (credentialRateLimiter != null)    retryAfter = Math.max(retryAfter, credentialRateLimiter.getRetryAfter(TimeUnit.SECONDS));
+
+    return new TooManyAttemptsException(retryAfter);
+  }
 
   public boolean supports(Type clazz) {
     return clazz.equals(principalType);
   }
 
+  /**
+   * @return the number of requests accepted because they were already authenticated
+   */
+  public long getReusedCount() {
+    return reused.sum();
+  }
+
+  /**
+   * @return whether the filter issues session tickets, and so reports ticket metrics
+   */
+  boolean hasSessionTickets() {
+    return false;
+  }
+
+  /**
+   * @return the authenticator this filter delegates to, including any caching layers
+   *         configured through the builder
+   */
+  public Authenticator<C, P> getAuthenticator() {
+    return authenticator;
+  }
+
+  /**
+   * @return the authorizer this filter answers {@code isUserInRole} with, including the
+   *         {@link CachingAuthorizer} configured through the builder, or {@code null} if none is set
+   */
+  public Authorizer<P> getAuthorizer() {
+    return authorizer;
+  }
+
+  /**
+   * Discards the cached role decisions for a principal, for example after their roles change.
+   * Does nothing unless the builder was given an authorization cache policy.
+   *
+   * @param principal the principal whose roles changed
+   */
+  public void invalidateAuthorization(P principal) {
+    if (authorizer instanceof CachingAuthorizer) {
+      ((CachingAuthorizer<P>) authorizer).invalidate(principal);
+    }
+  }
+
   /**
    * Abstract builder for auth filters.
    *
@@ -38,6 +372,26 @@ public abstract class AuthFilter<C, P> implements ContainerRequestFilter {
     private String prefix = "Basic";
     private Authenticator<C, P> authenticator;
     private Class<P> principalType;
+    private CacheBuilderSpec authenticationCachePolicy;
+    private CacheBuilderSpec negativeAuthenticationCachePolicy;
+    private long coalescingTimeoutNanos;
+    private AsyncAuthenticator<C, P> asyncAuthenticator;
+    private Executor authenticationExecutor;
+    private long authenticationTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private MetricRegistry metricRegistry;
+    private AuthListener authListener;
+    private Authorizer<P> authorizer;
+    private CacheBuilderSpec authorizationCachePolicy;
+    private int maxConcurrentAuthentications;
+    private int circuitBreakerFailureThreshold;
+    private long circuitBreakerOpenNanos;
+    private CacheBuilderSpec staleAuthenticationCachePolicy;
+    private ClusterAuthCache<P> clusterAuthCache;
+    private Function<? super C, String> clusterKeyFunction;
+    private Predicate<? super C> credentialPreFilter;
+    private AuthRateLimiter credentialRateLimiter;
+    private AuthRateLimiter remoteAddressRateLimiter;
+    private Function<ContainerRequestContext, String> remoteAddressResolver;
 
     /**
      * Sets the given realm
@@ -72,11 +426,238 @@ public abstract class AuthFilter<C, P> implements ContainerRequestFilter {
       return this;
     }
 
+    /**
+     * Sets the given asynchronous authenticator, used in place of a blocking one.  The request
+     * thread still waits for it, up to the authentication timeout, so this bounds how long a
+     * slow lookup can hold a request rather than freeing the thread.  Mutually exclusive with
+     * {@link #setAuthenticator(Authenticator)}.
+     *
+     * @param asyncAuthenticator an {@link AsyncAuthenticator}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAsyncAuthenticator(AsyncAuthenticator<C, P> asyncAuthenticator) {
+      this.asyncAuthenticator = asyncAuthenticator;
+      return this;
+    }
+
+    /**
+     * Runs a blocking authenticator on the given executor, so that the request thread gives up
+     * after the authentication timeout instead of waiting out a slow lookup.  The request
+     * thread is still occupied while it waits, and a lookup which times out is interrupted.
+     *
+     * @param authenticationExecutor an executor
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAuthenticationExecutor(Executor authenticationExecutor) {
+      this.authenticationExecutor = authenticationExecutor;
+      return this;
+    }
+
+    /**
+     * Sets how long a request waits for an asynchronous or offloaded authentication before it
+     * is failed.  Defaults to 30 seconds.
+     *
+     * @param timeout a timeout
+     * @param unit    the unit of {@code timeout}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAuthenticationTimeout(long timeout, TimeUnit unit) {
+      this.authenticationTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
     public AuthFilterBuilder<C, P, T> setPrincipal(Class<P> principalType) {
       this.principalType = principalType;
       return this;
     }
 
+    /**
+     * Caches successful authentications according to the given policy, for example
+     * {@code maximumSize=10000, expireAfterAccess=10m}.
+     *
+     * @param authenticationCachePolicy a cache policy
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAuthenticationCachePolicy(CacheBuilderSpec authenticationCachePolicy) {
+      this.authenticationCachePolicy = authenticationCachePolicy;
+      return this;
+    }
+
+    /**
+     * Caches rejected credentials according to the given policy.  Only takes effect when an
+     * authentication cache policy is also set.
+     *
+     * @param negativeAuthenticationCachePolicy a cache policy
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setNegativeAuthenticationCachePolicy(CacheBuilderSpec negativeAuthenticationCachePolicy) {
+      this.negativeAuthenticationCachePolicy = negativeAuthenticationCachePolicy;
+      return this;
+    }
+
+    /**
+     * Bounds the number of concurrent calls to the authenticator.  Requests beyond the limit
+     * fail immediately with a 503 rather than queueing behind a slow backend.
+     *
+     * @param maxConcurrentAuthentications the maximum number of concurrent calls
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setMaxConcurrentAuthentications(int maxConcurrentAuthentications) {
+      this.maxConcurrentAuthentications = maxConcurrentAuthentications;
+      return this;
+    }
+
+    /**
+     * Stops calling the authenticator after the given number of consecutive failures, failing
+     * requests with a 503 until a trial call succeeds after the open interval.
+     *
+     * @param failureThreshold the number of consecutive failures which opens the breaker
+     * @param openDuration     how long the breaker stays open before a trial call
+     * @param unit             the unit of {@code openDuration}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setCircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+      this.circuitBreakerFailureThreshold = failureThreshold;
+      this.circuitBreakerOpenNanos        = unit.toNanos(openDuration);
+      return this;
+    }
+
+    /**
+     * Remembers successful authentications according to the given policy, usually with a long
+     * lifetime, and serves them when the authenticator is failing or shedding load.  Only takes
+     * effect with a bulkhead or circuit breaker.
+     *
+     * @param staleAuthenticationCachePolicy a cache policy
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setStaleAuthenticationCachePolicy(CacheBuilderSpec staleAuthenticationCachePolicy) {
+      this.staleAuthenticationCachePolicy = staleAuthenticationCachePolicy;
+      return this;
+    }
+
+    /**
+     * Shares successful authentications with other nodes through a cluster cache.  When an
+     * authentication cache policy is also set, the local cache acts as a near-cache in front of
+     * it and drops principals invalidated anywhere in the cluster.
+     *
+     * @param clusterAuthCache   the cluster cache
+     * @param clusterKeyFunction maps credentials to the key they are shared under, for example
+     *                           {@link ClusterCachingAuthenticator#digestedKeys(byte[])}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setClusterAuthCache(ClusterAuthCache<P> clusterAuthCache, Function<? super C, String> clusterKeyFunction) {
+      this.clusterAuthCache   = clusterAuthCache;
+      this.clusterKeyFunction = clusterKeyFunction;
+      return this;
+    }
+
+    /**
+     * Lets concurrent requests with identical credentials share a single call to the
+     * authenticator, each waiting at most the given time for the shared result.
+     *
+     * @param maxWait how long a request waits on another request's in-flight authentication
+     * @param unit    the unit of {@code maxWait}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setCoalescingTimeout(long maxWait, TimeUnit unit) {
+      this.coalescingTimeoutNanos = unit.toNanos(maxWait);
+      return this;
+    }
+
+    /**
+     * Sets the authorizer used to answer {@code isUserInRole}, for example for
+     * {@code @RolesAllowed}.  It is only called for requests which actually check a role.
+     *
+     * @param authorizer an {@link Authorizer}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAuthorizer(Authorizer<P> authorizer) {
+      this.authorizer = authorizer;
+      return this;
+    }
+
+    /**
+     * Caches role decisions per principal, across requests, according to the given policy.
+     * Only takes effect when an authorizer is also set.
+     *
+     * @param authorizationCachePolicy a cache policy
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAuthorizationCachePolicy(CacheBuilderSpec authorizationCachePolicy) {
+      this.authorizationCachePolicy = authorizationCachePolicy;
+      return this;
+    }
+
+    /**
+     * Rejects credentials which fail the given predicate with a 401, without calling the
+     * authenticator.  It should be cheap and err towards passing, for example a
+     * {@link KnownUsernameFilter} of the usernames which exist.
+     *
+     * @param credentialPreFilter a predicate which returns {@code false} for credentials which
+     *                            are certainly invalid
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setCredentialPreFilter(Predicate<? super C> credentialPreFilter) {
+      this.credentialPreFilter = credentialPreFilter;
+      return this;
+    }
+
+    /**
+     * Throttles failed attempts per credential, keyed by {@link AuthFilter#getRateLimitKey(Object)}
+     * (the username, for Basic credentials).  Blocked credentials are rejected with a 429
+     * without calling the authenticator.
+     *
+     * @param credentialRateLimiter a rate limiter
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setCredentialRateLimiter(AuthRateLimiter credentialRateLimiter) {
+      this.credentialRateLimiter = credentialRateLimiter;
+      return this;
+    }
+
+    /**
+     * Throttles failed attempts per client address.  Blocked clients are rejected with a 429
+     * before their credentials are even parsed.
+     *
+     * @param remoteAddressRateLimiter a rate limiter
+     * @param remoteAddressResolver    resolves a request's client address, or {@code null} to
+     *                                 skip throttling it; for example from a trusted
+     *                                 {@code X-Forwarded-For} header
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setRemoteAddressRateLimiter(AuthRateLimiter remoteAddressRateLimiter,
+                                                                  Function<ContainerRequestContext, String> remoteAddressResolver)
+    {
+      this.remoteAddressRateLimiter = remoteAddressRateLimiter;
+      this.remoteAddressResolver    = remoteAddressResolver;
+      return this;
+    }
+
+    /**
+     * Registers latency, outcome and in-flight metrics for the filter, named for its principal
+     * type and realm.  Building a second filter with the same principal type and realm against
+     * the same registry fails, so give such filters distinct realms.
+     *
+     * @param metricRegistry a metric registry
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setMetricRegistry(MetricRegistry metricRegistry) {
+      this.metricRegistry = metricRegistry;
+      return this;
+    }
+
+    /**
+     * Reports the start and end of each stage of authentication to the given listener, for
+     * example a {@link HdrHistogramAuthListener}.
+     *
+     * @param authListener an {@link AuthListener}
+     * @return the current builder
+     */
+    public AuthFilterBuilder<C, P, T> setAuthListener(AuthListener authListener) {
+      this.authListener = authListener;
+      return this;
+    }
+
     /**
      * Builds an instance of the filter with a provided authenticator,
      * an authorizer, a prefix, and a realm.
@@ -86,13 +667,71 @@ public abstract class AuthFilter<C, P> implements ContainerRequestFilter {
     public T buildAuthFilter() {
       Preconditions.checkArgument(realm != null, "Realm is not set");
       Preconditions.checkArgument(prefix != null, "Prefix is not set");
-      Preconditions.checkArgument(authenticator != null, "Authenticator is not set");
+      Preconditions.checkArgument(authenticator != null || asyncAuthenticator != null, "Authenticator is not set");
+      Preconditions.checkArgument(asyncAuthenticator == null || (authenticator == null && authenticationExecutor == null),
+                                  "Async authenticator can't be combined with an authenticator or authentication executor");
+      Preconditions.checkArgument(remoteAddressRateLimiter == null || remoteAddressResolver != null, "Remote address resolver is not set");
+      Preconditions.checkArgument(clusterAuthCache == null || clusterKeyFunction != null, "Cluster key function is not set");
+
+      Authenticator<C, P> authenticator = this.authenticator;
+
+      if (asyncAuthenticator != null) {
+        authenticator = new AsyncAuthenticatorAdapter<>(asyncAuthenticator, authenticationTimeoutNanos, TimeUnit.NANOSECONDS);
+      } else if (authenticationExecutor != null) {
+        authenticator = new AsyncAuthenticatorAdapter<>(AsyncAuthenticator.offload(authenticator, authenticationExecutor),
+                                                        authenticationTimeoutNanos, TimeUnit.NANOSECONDS);
+      }
+
+      CircuitBreakerAuthenticator<C, P> circuitBreaker = null;
+
+      if (maxConcurrentAuthentications > 0 || circuitBreakerFailureThreshold > 0) {
+        circuitBreaker = new CircuitBreakerAuthenticator<>(authenticator, maxConcurrentAuthentications,
+                                                           circuitBreakerFailureThreshold, circuitBreakerOpenNanos, TimeUnit.NANOSECONDS,
+                                                           staleAuthenticationCachePolicy);
+        authenticator  = circuitBreaker;
+      }
+
+      if (clusterAuthCache != null) {
+        authenticator = new ClusterCachingAuthenticator<>(authenticator, clusterAuthCache, clusterKeyFunction);
+      }
+
+      if (coalescingTimeoutNanos > 0) {
+        authenticator = new CoalescingAuthenticator<>(authenticator, coalescingTimeoutNanos, TimeUnit.NANOSECONDS);
+      }
+
+      if (authenticationCachePolicy != null) {
+        CachingAuthenticator<C, P> nearCache = new CachingAuthenticator<>(authenticator, authenticationCachePolicy, negativeAuthenticationCachePolicy);
+
+        if (clusterAuthCache != null) {
+          clusterAuthCache.subscribe(nearCache::invalidatePrincipal);
+        }
+
+        authenticator = nearCache;
+      }
 
       T authFilter = newInstance();
       authFilter.authenticator = authenticator;
       authFilter.prefix        = prefix;
       authFilter.realm         = realm;
       authFilter.principalType = principalType;
+      authFilter.authorizer    = authorizer != null && authorizationCachePolicy != null
+                                 ? new CachingAuthorizer<>(authorizer, authorizationCachePolicy)
+                                 : authorizer;
+
+      authFilter.listener                 = authListener;
+      authFilter.credentialPreFilter      = credentialPreFilter;
+      authFilter.credentialRateLimiter    = credentialRateLimiter;
+      authFilter.remoteAddressRateLimiter = remoteAddressRateLimiter;
+      authFilter.remoteAddressResolver    = remoteAddressResolver;
+
+      if (metricRegistry != null) {
+        authFilter.metrics = new AuthFilterMetrics(metricRegistry, principalType, realm, authFilter.hasSessionTickets());
+
+        if (circuitBreaker != null) {
+          circuitBreaker.registerMetrics(metricRegistry, AuthFilterMetrics.prefix(principalType, realm));
+        }
+      }
+
       return authFilter;
     }
 
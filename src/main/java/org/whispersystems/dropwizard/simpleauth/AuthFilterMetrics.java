@@ -0,0 +1,94 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The metrics an {@link AuthFilter} reports, named for the fully qualified name of the filter's
+ * principal type and its realm.  Two filters with the same principal type and realm can't share
+ * a registry, since their metrics would be indistinguishable:
+ *
+ * <ul>
+ *   <li>{@code authenticate}: a timer around each call to the authenticator</li>
+ *   <li>{@code authenticated}, {@code missing}, {@code malformed}, {@code invalid},
+ *       {@code error}, {@code throttled} and {@code unavailable}: meters for each
+ *       {@link AuthResult}</li>
+ *   <li>{@code reused}: a meter of requests which were already authenticated by an earlier
+ *       filter</li>
+ *   <li>{@code ticket} and {@code password}: meters of requests authenticated by a session
+ *       ticket and by their password, registered only for filters with session tickets</li>
+ *   <li>{@code inFlight}: a gauge of authenticator calls currently in progress</li>
+ * </ul>
+ */
+class AuthFilterMetrics {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final Timer   authenticate;
+  private final Meter[] results;
+  private final Meter   reused;
+  private final Meter   ticket;
+  private final Meter   password;
+
+  AuthFilterMetrics(MetricRegistry registry, Class<?> principalType, String realm, boolean sessionTickets) {
+    String prefix = prefix(principalType, realm);
+
+    String inFlightName = MetricRegistry.name(prefix, "inFlight");
+
+    Preconditions.checkArgument(!registry.getNames().contains(inFlightName),
+                                "Metrics for %s are already registered; give the filter a distinct realm", prefix);
+
+    registry.register(inFlightName, (Gauge<Integer>) inFlight::get);
+
+    this.authenticate = registry.timer(MetricRegistry.name(prefix, "authenticate"));
+    this.results      = new Meter[AuthResult.values().length];
+
+    this.results[AuthResult.AUTHENTICATED.ordinal()]         = registry.meter(MetricRegistry.name(prefix, "authenticated"));
+    this.results[AuthResult.MISSING_CREDENTIALS.ordinal()]   = registry.meter(MetricRegistry.name(prefix, "missing"));
+    this.results[AuthResult.MALFORMED_CREDENTIALS.ordinal()] = registry.meter(MetricRegistry.name(prefix, "malformed"));
+    this.results[AuthResult.INVALID_CREDENTIALS.ordinal()]   = registry.meter(MetricRegistry.name(prefix, "invalid"));
+    this.results[AuthResult.ERROR.ordinal()]                 = registry.meter(MetricRegistry.name(prefix, "error"));
+    this.results[AuthResult.THROTTLED.ordinal()]             = registry.meter(MetricRegistry.name(prefix, "throttled"));
+    this.results[AuthResult.UNAVAILABLE.ordinal()]           = registry.meter(MetricRegistry.name(prefix, "unavailable"));
+
+    this.reused   = registry.meter(MetricRegistry.name(prefix, "reused"));
+    this.ticket   = sessionTickets ? registry.meter(MetricRegistry.name(prefix, "ticket"))   : null;
+    this.password = sessionTickets ? registry.meter(MetricRegistry.name(prefix, "password")) : null;
+  }
+
+  static String prefix(Class<?> principalType, String realm) {
+    return MetricRegistry.name(AuthFilter.class, principalType == null ? "unknown" : principalType.getName(), realm);
+  }
+
+  long start() {
+    inFlight.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  void stop(long start) {
+    authenticate.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    inFlight.decrementAndGet();
+  }
+
+  void mark(AuthResult result) {
+    results[result.ordinal()].mark();
+  }
+
+  void markReused() {
+    reused.mark();
+  }
+
+  void markTicket() {
+    if (ticket != null) ticket.mark();
+  }
+
+  void markPassword() {
+    if (password != null) password.mark();
+  }
+}
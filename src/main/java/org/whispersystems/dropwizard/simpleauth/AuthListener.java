@@ -0,0 +1,31 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * Receives start and end callbacks for each {@link AuthStage} of authenticating a request, for
+ * tracing and latency breakdowns.
+ *
+ * Callbacks run on the request thread and should be cheap.  A filter without a listener skips
+ * the callbacks and their timing altogether.  The principal type and realm identify the filter;
+ * for {@link AuthStage#INJECTION} they are the parameter's type and {@code null}.
+ */
+public interface AuthListener {
+
+  /**
+   * @param stage         the stage starting
+   * @param principalType the filter's principal type
+   * @param realm         the filter's realm
+   */
+  default void onStart(AuthStage stage, Class<?> principalType, String realm) {}
+
+  /**
+   * @param stage         the stage ending
+   * @param principalType the filter's principal type
+   * @param realm         the filter's realm
+   * @param durationNanos how long the stage took
+   * @param result        the outcome so far: for {@link AuthStage#AUTHENTICATOR},
+   *                      {@code AUTHENTICATED}, {@code INVALID_CREDENTIALS} or an error; for
+   *                      {@link AuthStage#INJECTION}, {@code AUTHENTICATED} or
+   *                      {@code MISSING_CREDENTIALS}
+   */
+  default void onEnd(AuthStage stage, Class<?> principalType, String realm, long durationNanos, AuthResult result) {}
+}
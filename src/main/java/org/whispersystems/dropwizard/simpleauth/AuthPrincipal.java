@@ -11,9 +11,14 @@ public class AuthPrincipal implements Principal {
     this.authenticated = authenticated;
   }
 
+  /**
+   * @return the authenticated object's own name if it is a {@link Principal}, otherwise its
+   *         string form
+   */
   @Override
   public String getName() {
-    return null;
+    if (authenticated instanceof Principal) return ((Principal) authenticated).getName();
+    else                                    return String.valueOf(authenticated);
   }
 
   @Override
@@ -0,0 +1,130 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles failed authentication attempts per key, such as a username or a remote address.
+ *
+ * Each key gets a token bucket which holds up to {@code burst} failures and drains one every
+ * {@code interval}.  A key whose bucket is full is blocked until it drains.  The bucket is kept as
+ * a single "theoretical arrival time" (the generic cell rate algorithm), so checks and updates
+ * are one lock-free compare-and-set on an {@link AtomicLong}.
+ *
+ * Buckets live in a cache bounded to {@code maximumSize} keys, and are dropped once they would
+ * have drained anyway.
+ */
+public class AuthRateLimiter {
+
+  private final LongAdder allowed = new LongAdder();
+  private final LongAdder blocked = new LongAdder();
+
+  private final Cache<String, AtomicLong> buckets;
+  private final long                      intervalNanos;
+  private final long                      toleranceNanos;
+
+  /**
+   * @param burst       the number of failures a key may accumulate before it is blocked
+   * @param interval    how often one failure drains from a key's bucket
+   * @param unit        the unit of {@code interval}
+   * @param maximumSize the maximum number of keys to track
+   */
+  public AuthRateLimiter(int burst, long interval, TimeUnit unit, long maximumSize) {
+    Preconditions.checkArgument(burst > 0, "Burst must be positive");
+    Preconditions.checkArgument(interval > 0, "Interval must be positive");
+    Preconditions.checkArgument(maximumSize > 0, "Maximum size must be positive");
+
+    this.intervalNanos  = unit.toNanos(interval);
+    this.toleranceNanos = (burst - 1) * intervalNanos;
+    this.buckets        = CacheBuilder.newBuilder()
+                                      .maximumSize(maximumSize)
+                                      .expireAfterAccess(burst * intervalNanos, TimeUnit.NANOSECONDS)
+                                      .build();
+  }
+
+  /**
+   * @param key a client key
+   * @return {@code true} if the key has failed too often and should not be authenticated
+   */
+  public boolean isBlocked(String key) {
+    AtomicLong bucket    = buckets.getIfPresent(key);
+    boolean    isBlocked = bucket != null && bucket.get() - System.nanoTime() > toleranceNanos;
+
+    if (isBlocked) blocked.increment();
+    else           allowed.increment();
+
+    return isBlocked;
+  }
+
+  /**
+   * Adds a failed attempt to the key's bucket.
+   *
+   * @param key a client key
+   */
+  public void recordFailure(String key) {
+    AtomicLong bucket;
+
+    try {
+      bucket = buckets.get(key, () -> new AtomicLong(System.nanoTime()));
+    } catch (ExecutionException e) {
+      throw new AssertionError(e);
+    }
+
+    long current, updated;
+
+    do {
+      long now = System.nanoTime();
+
+      current = bucket.get();
+      updated = Math.max(current, now) + intervalNanos;
+    } while (!bucket.compareAndSet(current, updated));
+  }
+
+  /**
+   * Forgets the key's failures, for example after it authenticates successfully.
+   *
+   * @param key a client key
+   */
+  public void reset(String key) {
+    if (buckets.getIfPresent(key) != null) {
+      buckets.invalidate(key);
+    }
+  }
+
+  /**
+   * @param unit the unit to report in
+   * @return how long a blocked key waits, at most, before its next attempt is allowed,
+   *         rounded up
+   */
+  public long getRetryAfter(TimeUnit unit) {
+    long unitNanos = unit.toNanos(1);
+    return (intervalNanos + unitNanos - 1) / unitNanos;
+  }
+
+  /**
+   * @return the number of attempts let through
+   */
+  public long getAllowedCount() {
+    return allowed.sum();
+  }
+
+  /**
+   * @return the number of attempts refused
+   */
+  public long getBlockedCount() {
+    return blocked.sum();
+  }
+
+  /**
+   * @return the approximate number of keys being tracked
+   */
+  public long size() {
+    return buckets.size();
+  }
+}
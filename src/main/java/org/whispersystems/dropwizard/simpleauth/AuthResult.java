@@ -0,0 +1,32 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * The outcome of an {@link AuthFilter} authenticating a request.
+ */
+public enum AuthResult {
+
+  /** The request carried valid credentials and now has an authenticated security context. */
+  AUTHENTICATED,
+
+  /** The request carried no credentials for the filter's scheme. */
+  MISSING_CREDENTIALS,
+
+  /** The request carried credentials for the filter's scheme which could not be decoded. */
+  MALFORMED_CREDENTIALS,
+
+  /** The request carried well-formed credentials which the authenticator rejected. */
+  INVALID_CREDENTIALS,
+
+  /** The authenticator failed with an underlying error. */
+  ERROR,
+
+  /** The request was refused without being authenticated, because its client has failed too often. */
+  THROTTLED,
+
+  /** The authenticator is shedding load or its backend is down. */
+  UNAVAILABLE;
+
+  public boolean isAuthenticated() {
+    return this == AUTHENTICATED;
+  }
+}
@@ -2,25 +2,66 @@ package org.whispersystems.dropwizard.simpleauth;
 
 import javax.ws.rs.core.SecurityContext;
 import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
 
-public class AuthSecurityContext<P> implements SecurityContext {
+/**
+ * The security context of an authenticated request, which is also its {@link AuthPrincipal}.
+ *
+ * Roles are resolved through an optional {@link Authorizer}, which is not consulted until
+ * {@link #isUserInRole(String)} is first called.  Decisions are then remembered for the rest
+ * of the request.
+ */
+public class AuthSecurityContext<P> extends AuthPrincipal implements SecurityContext {
 
-  private final AuthPrincipal principal;
+  private final P             principal;
   private final boolean       secure;
+  private final String        scheme;
+  private final Authorizer<P> authorizer;
+
+  private Map<String, Boolean> roles;
 
   public AuthSecurityContext(P principal, boolean secure) {
-    this.principal = new AuthPrincipal(principal);
-    this.secure    = secure;
+    this(principal, secure, SecurityContext.BASIC_AUTH, null);
+  }
+
+  /**
+   * @param principal  the authenticated principal
+   * @param secure     whether the request was made over a secure channel
+   * @param scheme     the authentication scheme
+   * @param authorizer resolves the principal's roles, or {@code null} if it has none
+   */
+  public AuthSecurityContext(P principal, boolean secure, String scheme, Authorizer<P> authorizer) {
+    super(principal);
+    this.principal  = principal;
+    this.secure     = secure;
+    this.scheme     = scheme;
+    this.authorizer = authorizer;
   }
 
   @Override
   public Principal getUserPrincipal() {
-    return principal;
+    return this;
   }
 
   @Override
   public boolean isUserInRole(String role) {
-    return false;
+    if (authorizer == null) {
+      return false;
+    }
+
+    if (roles == null) {
+      roles = new HashMap<>(4);
+    }
+
+    Boolean decision = roles.get(role);
+
+    if (decision == null) {
+      decision = authorizer.authorize(principal, role);
+      roles.put(role, decision);
+    }
+
+    return decision;
   }
 
   @Override
@@ -30,6 +71,6 @@ public class AuthSecurityContext<P> implements SecurityContext {
 
   @Override
   public String getAuthenticationScheme() {
-    return SecurityContext.BASIC_AUTH;
+    return scheme;
   }
 }
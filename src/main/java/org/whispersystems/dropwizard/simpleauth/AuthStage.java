@@ -0,0 +1,22 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * The stages of authenticating a request reported to an {@link AuthListener}.
+ */
+public enum AuthStage {
+
+  /**
+   * The whole of {@link AuthFilter#authenticate}: extracting and parsing credentials, throttling
+   * and the authenticator.  Time spent outside {@link #AUTHENTICATOR} is the filter's own.
+   */
+  REQUEST,
+
+  /** The call to the authenticator, including any caching, coalescing or circuit breaking. */
+  AUTHENTICATOR,
+
+  /** Building the error response for a request which was not authenticated. */
+  REJECTION,
+
+  /** Injecting the principal into an {@code @Auth} resource parameter. */
+  INJECTION
+}
@@ -4,6 +4,7 @@ import org.glassfish.hk2.api.InjectionResolver;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.TypeLiteral;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.server.ContainerRequest;
 import org.glassfish.jersey.server.internal.inject.AbstractContainerRequestValueFactory;
 import org.glassfish.jersey.server.internal.inject.AbstractValueFactoryProvider;
 import org.glassfish.jersey.server.internal.inject.MultivaluedParameterExtractorProvider;
@@ -21,11 +22,14 @@ import io.dropwizard.auth.Auth;
 @Singleton
 public class AuthValueFactoryProvider extends AbstractValueFactoryProvider {
 
+  private final AuthListener listener;
+
   @Inject
   public AuthValueFactoryProvider(MultivaluedParameterExtractorProvider mpep,
                                   ServiceLocator injector)
   {
     super(mpep, injector, Parameter.Source.UNKNOWN);
+    this.listener = injector.getService(AuthListener.class);
   }
 
   @Override
@@ -35,24 +39,56 @@ public class AuthValueFactoryProvider extends AbstractValueFactoryProvider {
     }
 
     if (parameter.getRawType() == Optional.class) {
-      return new OptionalContainerRequestValueFactory(parameter);
+      return new OptionalContainerRequestValueFactory(listener);
     } else {
-      return new StandardContainerReqeustValueFactory(parameter);
+      return new StandardContainerReqeustValueFactory(parameter, listener);
     }
   }
 
   private static class StandardContainerReqeustValueFactory extends AbstractContainerRequestValueFactory {
-    private final Parameter parameter;
+    private final Class<?>     rawType;
+    private final AuthListener listener;
 
-    StandardContainerReqeustValueFactory(Parameter parameter) {
-      this.parameter = parameter;
+    StandardContainerReqeustValueFactory(Parameter parameter, AuthListener listener) {
+      this.rawType  = parameter.getRawType();
+      this.listener = listener;
     }
 
     /**
      * @return {@link Principal} stored on the request, or {@code null} if no object was found.
      */
     public Object provide() {
-      Principal principal = getContainerRequest().getSecurityContext().getUserPrincipal();
+      if (listener == null) {
+        return resolve();
+      }
+
+      listener.onStart(AuthStage.INJECTION, rawType, null);
+
+      long       start  = System.nanoTime();
+      AuthResult result = AuthResult.ERROR;
+
+      try {
+        Object principal = resolve();
+        result = AuthResult.AUTHENTICATED;
+        return principal;
+      } finally {
+        listener.onEnd(AuthStage.INJECTION, rawType, null, System.nanoTime() - start, result);
+      }
+    }
+
+    private Object resolve() {
+      ContainerRequest request   = getContainerRequest();
+      Object           principal = request.getProperty(AuthFilter.PRINCIPAL_PROPERTY);
+
+      if (principal != null && rawType.isInstance(principal)) {
+        return principal;
+      }
+
+      return fromSecurityContext(request);
+    }
+
+    private Object fromSecurityContext(ContainerRequest request) {
+      Principal principal = request.getSecurityContext().getUserPrincipal();
 
       if (principal == null) {
         throw new IllegalStateException("Cannot inject a custom principal into unauthenticated request");
@@ -62,26 +98,59 @@ public class AuthValueFactoryProvider extends AbstractValueFactoryProvider {
         throw new IllegalArgumentException("Cannot inject a non-AuthPrincipal into request");
       }
 
-      if (!parameter.getRawType().isAssignableFrom(((AuthPrincipal)principal).getAuthenticated().getClass())) {
+      Object authenticated = ((AuthPrincipal) principal).getAuthenticated();
+
+      if (!rawType.isInstance(authenticated)) {
         throw new IllegalArgumentException("Authenticated principal is of the wrong type!");
       }
 
-      return parameter.getRawType().cast(((AuthPrincipal) principal).getAuthenticated());
+      return authenticated;
     }
   }
 
   private static class OptionalContainerRequestValueFactory extends AbstractContainerRequestValueFactory {
-    private final Parameter parameter;
 
-    OptionalContainerRequestValueFactory(Parameter parameter) {
-      this.parameter = parameter;
+    private final AuthListener listener;
+
+    OptionalContainerRequestValueFactory(AuthListener listener) {
+      this.listener = listener;
     }
 
     /**
      * @return {@link Principal} stored on the request, or {@code null} if no object was found.
      */
     public Object provide() {
-      Principal principal = getContainerRequest().getSecurityContext().getUserPrincipal();
+      if (listener == null) {
+        return resolve();
+      }
+
+      listener.onStart(AuthStage.INJECTION, Optional.class, null);
+
+      long       start  = System.nanoTime();
+      AuthResult result = AuthResult.ERROR;
+
+      try {
+        Optional<?> principal = resolve();
+        result = principal.isPresent() ? AuthResult.AUTHENTICATED : AuthResult.MISSING_CREDENTIALS;
+        return principal;
+      } finally {
+        listener.onEnd(AuthStage.INJECTION, Optional.class, null, System.nanoTime() - start, result);
+      }
+    }
+
+    private Optional<?> resolve() {
+      ContainerRequest request   = getContainerRequest();
+      Object           principal = request.getProperty(AuthFilter.PRINCIPAL_PROPERTY);
+
+      if (principal != null) {
+        return Optional.of(principal);
+      }
+
+      return fromSecurityContext(request);
+    }
+
+    private Optional<?> fromSecurityContext(ContainerRequest request) {
+      Principal principal = request.getSecurityContext().getUserPrincipal();
 
       if (principal != null && !(principal instanceof AuthPrincipal)) {
         throw new IllegalArgumentException("Cannot inject a non-AuthPrincipal into request");
@@ -109,10 +178,25 @@ public class AuthValueFactoryProvider extends AbstractValueFactoryProvider {
    */
   public static class Binder extends AbstractBinder {
 
-    public Binder() {}
+    private final AuthListener listener;
+
+    public Binder() {
+      this(null);
+    }
+
+    /**
+     * @param listener a listener for the time spent injecting principals
+     */
+    public Binder(AuthListener listener) {
+      this.listener = listener;
+    }
 
     @Override
     protected void configure() {
+      if (listener != null) {
+        bind(listener).to(AuthListener.class);
+      }
+
       bind(AuthValueFactoryProvider.class).to(ValueFactoryProvider.class).in(Singleton.class);
       bind(AuthInjectionResolver.class).to(new TypeLiteral<InjectionResolver<Auth>>() {
       }).in(Singleton.class);
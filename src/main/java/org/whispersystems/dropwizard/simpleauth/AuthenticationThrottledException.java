@@ -0,0 +1,21 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * Thrown when credentials are refused because their {@link AuthRateLimiter} key has failed too
+ * often.  Auth filters answer it with a 429 rather than a 401.
+ *
+ * It is thrown for every attempt against a blocked key, so no stack trace is captured.
+ */
+public class AuthenticationThrottledException extends AuthenticationException {
+
+  public AuthenticationThrottledException(String message) {
+    super(message);
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,21 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * Thrown by an {@link Authenticator} which is refusing work to protect its backend, for example
+ * because its circuit breaker is open.  Auth filters answer it with a 503 rather than a 500.
+ *
+ * It is thrown for every request while the backend is down, so no stack trace is captured.
+ */
+public class AuthenticationUnavailableException extends AuthenticationException {
+
+  public AuthenticationUnavailableException(String message) {
+    super(message);
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,30 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * Allocation-free helpers for picking apart {@code Authorization} header values.
+ */
+final class AuthorizationHeaders {
+
+  private AuthorizationHeaders() {}
+
+  /**
+   * Matches the scheme of an {@code Authorization} header without copying it.
+   *
+   * @param header the header value
+   * @param scheme the expected scheme, compared case-insensitively
+   * @return the offset of the credentials following the scheme, or -1 if the header is not of
+   *         the given scheme
+   */
+  static int credentialsOffset(String header, String scheme) {
+    int length = scheme.length();
+
+    if (header.length() > length             &&
+        header.charAt(length) == ' '         &&
+        header.regionMatches(true, 0, scheme, 0, length))
+    {
+      return length + 1;
+    }
+
+    return -1;
+  }
+}
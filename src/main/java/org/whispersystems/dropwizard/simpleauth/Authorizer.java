@@ -0,0 +1,17 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * An interface for classes which decide whether an authenticated principal holds a role.
+ *
+ * @param <P> the type of principals the authorizer accepts
+ */
+public interface Authorizer<P> {
+  /**
+   * Decides whether the principal has the given role.
+   *
+   * @param principal an authenticated principal
+   * @param role      a role, for example one named by {@code @RolesAllowed}
+   * @return {@code true} if the principal holds the role
+   */
+  boolean authorize(P principal, String role);
+}
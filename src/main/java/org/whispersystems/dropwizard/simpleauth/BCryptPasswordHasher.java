@@ -0,0 +1,49 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
+
+/**
+ * bcrypt password hashes in the standard {@code $2y$cost$...} form.  Requires the optional
+ * {@code org.bouncycastle:bcprov-jdk15on} dependency.
+ */
+public class BCryptPasswordHasher implements PasswordHasher {
+
+  private final int cost;
+
+  /**
+   * @param cost the log2 work factor for new hashes, between 4 and 31
+   */
+  public BCryptPasswordHasher(int cost) {
+    Preconditions.checkArgument(cost >= 4 && cost <= 31, "Cost must be between 4 and 31");
+    this.cost = cost;
+  }
+
+  @Override
+  public boolean supports(String encodedHash) {
+    return encodedHash.startsWith("$2a$") || encodedHash.startsWith("$2b$") || encodedHash.startsWith("$2y$");
+  }
+
+  @Override
+  public String hash(String password) {
+    return OpenBSDBCrypt.generate(password.toCharArray(), PasswordHashes.salt(16), cost);
+  }
+
+  @Override
+  public boolean verify(String password, String encodedHash) {
+    try {
+      return OpenBSDBCrypt.checkPassword(encodedHash, password.toCharArray());
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean needsRehash(String encodedHash) {
+    try {
+      return Integer.parseInt(encodedHash.substring(4, 6)) < cost;
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      return true;
+    }
+  }
+}
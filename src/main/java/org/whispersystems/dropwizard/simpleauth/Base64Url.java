@@ -0,0 +1,77 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * Allocation-free decoding of unpadded base64url, as used in signed tokens.
+ */
+final class Base64Url {
+
+  private static final byte[] DECODE_TABLE = new byte[128];
+
+  static {
+    for (int i=0;i<DECODE_TABLE.length;i++) DECODE_TABLE[i] = -1;
+
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    for (int i=0;i<alphabet.length();i++) {
+      DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+    }
+  }
+
+  private Base64Url() {}
+
+  /**
+   * @return an upper bound on the number of bytes {@code length} characters decode to
+   */
+  static int maxDecodedLength(int length) {
+    return (length * 3) / 4 + 1;
+  }
+
+  /**
+   * Decodes {@code source[start..end)} into {@code output} at {@code offset}.
+   *
+   * @return the number of decoded bytes, or -1 if the input is not valid unpadded base64url,
+   *         including a final character whose unused low bits are not zero
+   */
+  static int decode(String source, int start, int end, byte[] output, int offset) {
+    int written = offset;
+    int bits    = 0;
+    int count   = 0;
+
+    for (int i=start;i<end;i++) {
+      char c = source.charAt(i);
+      int  v = c < 128 ? DECODE_TABLE[c] : -1;
+
+      if (v < 0) {
+        return -1;
+      }
+
+      bits = (bits << 6) | v;
+
+      if (++count == 4) {
+        output[written++] = (byte) (bits >> 16);
+        output[written++] = (byte) (bits >> 8);
+        output[written++] = (byte) bits;
+        bits  = 0;
+        count = 0;
+      }
+    }
+
+    switch (count) {
+      case 0:
+        break;
+      case 2:
+        if ((bits & 0xf) != 0) return -1;
+        output[written++] = (byte) (bits >> 4);
+        break;
+      case 3:
+        if ((bits & 0x3) != 0) return -1;
+        output[written++] = (byte) (bits >> 10);
+        output[written++] = (byte) (bits >> 2);
+        break;
+      default:
+        return -1;
+    }
+
+    return written - offset;
+  }
+}
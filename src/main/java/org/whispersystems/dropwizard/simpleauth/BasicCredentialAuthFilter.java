@@ -1,74 +1,214 @@
 package org.whispersystems.dropwizard.simpleauth;
 
-import com.google.common.io.BaseEncoding;
+import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Priority;
-import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.Priorities;
-import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.SecurityContext;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.basic.BasicCredentials;
 
+/**
+ * An {@link AuthFilter} for HTTP Basic credentials.
+ *
+ * With session tickets enabled, a successful password authentication also issues a short-lived
+ * ticket signed by a {@link TokenSigner}, which a {@link SessionTicketResponseFilter} returns in
+ * the {@value #TICKET_HEADER} response header.  A later request presenting the ticket in the
+ * same request header is authenticated by verifying its signature and expiry and asking a cheap
+ * ticket authenticator for the principal, without the password being checked again.  A ticket
+ * which is invalid or expired falls back to the request's Basic credentials.  Tickets are signed
+ * for the {@value #TICKET_PURPOSE} purpose, so they can't be used as bearer tokens from the same
+ * signer, nor bearer tokens as tickets.
+ */
 @Priority(Priorities.AUTHENTICATION)
 public class BasicCredentialAuthFilter<P> extends AuthFilter<BasicCredentials, P> {
 
+  /**
+   * The header session tickets are issued in and presented with.
+   */
+  public static final String TICKET_HEADER = "X-Auth-Ticket";
+
+  /**
+   * The request property a newly issued session ticket is stored under, until a
+   * {@link SessionTicketResponseFilter} copies it to the response.
+   */
+  public static final String TICKET_PROPERTY = BasicCredentialAuthFilter.class.getName() + ".ticket";
+
+  /**
+   * The {@link TokenSigner#forPurpose(String) purpose} session tickets are signed for.
+   */
+  public static final String TICKET_PURPOSE = "session-ticket";
+
   private static final Logger LOGGER = LoggerFactory.getLogger(BasicCredentialAuthFilter.class);
 
-  private BasicCredentialAuthFilter() {}
+  private final LongAdder ticketAuthentications   = new LongAdder();
+  private final LongAdder passwordAuthentications = new LongAdder();
+
+  private final TokenSigner                   ticketSigner;
+  private final Authenticator<SignedToken, P> ticketAuthenticator;
+  private final long                          ticketLifetimeMillis;
+
+  private BasicCredentialAuthFilter(TokenSigner ticketSigner, Authenticator<SignedToken, P> ticketAuthenticator, long ticketLifetimeMillis) {
+    this.ticketSigner         = ticketSigner;
+    this.ticketAuthenticator  = ticketAuthenticator;
+    this.ticketLifetimeMillis = ticketLifetimeMillis;
+  }
 
   @Override
-  public void filter(final ContainerRequestContext requestContext) throws IOException {
+  protected AuthResult authenticateRequest(final ContainerRequestContext requestContext) throws IOException {
+    if (ticketSigner != null) {
+      final String ticket = requestContext.getHeaders().getFirst(TICKET_HEADER);
+
+      if (ticket != null) {
+        final AuthResult result = authenticateTicket(requestContext, ticket);
+
+        if (result != AuthResult.INVALID_CREDENTIALS) {
+          return result;
+        }
+      }
+    }
+
     final String header = requestContext.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
 
+    if (header == null) {
+      return AuthResult.MISSING_CREDENTIALS;
+    }
+
+    final int offset = AuthorizationHeaders.credentialsOffset(header, prefix);
+
+    if (offset < 0) {
+      return AuthResult.MISSING_CREDENTIALS;
+    }
+
+    final BasicCredentials credentials = BasicCredentialsParser.parse(header, offset);
+
+    if (credentials == null) {
+      LOGGER.warn("Malformed {} credentials in Authorization header", prefix);
+      return AuthResult.MALFORMED_CREDENTIALS;
+    }
+
     try {
-      if (header != null) {
-        final int space = header.indexOf(' ');
-        if (space > 0) {
-          final String method = header.substring(0, space);
-          if (prefix.equalsIgnoreCase(method)) {
-            final String decoded = new String(
-                BaseEncoding.base64().decode(header.substring(space + 1)),
-                StandardCharsets.UTF_8);
-            final int i = decoded.indexOf(':');
-            if (i > 0) {
-              final String username = decoded.substring(0, i);
-              final String password = decoded.substring(i + 1);
-              final BasicCredentials credentials = new BasicCredentials(username, password);
-              try {
-                Optional<P> principal = authenticator.authenticate(credentials);
-
-                if (principal.isPresent()) {
-                  requestContext.setSecurityContext(new AuthSecurityContext<P>(principal.get(), false));
-                  return;
-                }
-              } catch (AuthenticationException e) {
-                LOGGER.warn("Error authenticating credentials", e);
-                throw new InternalServerErrorException();
-              }
-            }
-          }
+      Optional<P> principal = authenticateCredentials(credentials);
+
+      if (principal.isPresent()) {
+        passwordAuthentications.increment();
+        if (metrics != null) metrics.markPassword();
+        setAuthenticatedPrincipal(requestContext, principal.get());
+
+        if (ticketSigner != null) {
+          requestContext.setProperty(TICKET_PROPERTY, ticketSigner.sign(credentials.getUsername(), System.currentTimeMillis() + ticketLifetimeMillis));
         }
+
+        return AuthResult.AUTHENTICATED;
+      }
+
+      return AuthResult.INVALID_CREDENTIALS;
+    } catch (AuthenticationThrottledException e) {
+      return AuthResult.THROTTLED;
+    } catch (AuthenticationException e) {
+      LOGGER.warn("Error authenticating credentials", e);
+      return errorResult(e);
+    }
+  }
+
+  @Override
+  boolean hasSessionTickets() {
+    return ticketSigner != null;
+  }
+
+  private AuthResult authenticateTicket(ContainerRequestContext requestContext, String ticket) {
+    SignedToken verified = ticketSigner.verify(ticket);
+
+    if (verified == null) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    try {
+      Optional<P> principal = authenticateWith(ticketAuthenticator, verified);
+
+      if (principal.isPresent()) {
+        ticketAuthentications.increment();
+        if (metrics != null) metrics.markTicket();
+        setAuthenticatedPrincipal(requestContext, principal.get());
+        return AuthResult.AUTHENTICATED;
       }
-    } catch (IllegalArgumentException e) {
-      LOGGER.warn("Error decoding credentials", e);
+
+      return AuthResult.INVALID_CREDENTIALS;
+    } catch (AuthenticationException e) {
+      LOGGER.warn("Error authenticating session ticket", e);
+      return errorResult(e);
     }
+  }
 
-    throw new WebApplicationException(unauthorizedHandler.buildResponse(prefix, realm));
+  @Override
+  protected String getRateLimitKey(BasicCredentials credentials) {
+    return credentials.getUsername();
+  }
+
+  @Override
+  protected String getAuthenticationScheme() {
+    return SecurityContext.BASIC_AUTH;
+  }
+
+  /**
+   * @return the number of requests authenticated by a session ticket
+   */
+  public long getTicketAuthenticatedCount() {
+    return ticketAuthentications.sum();
+  }
+
+  /**
+   * @return the number of requests authenticated by their Basic credentials
+   */
+  public long getPasswordAuthenticatedCount() {
+    return passwordAuthentications.sum();
   }
 
   public static class Builder<P> extends AuthFilter.AuthFilterBuilder<BasicCredentials, P, BasicCredentialAuthFilter<P>> {
 
+    private TokenSigner                   ticketSigner;
+    private Authenticator<SignedToken, P> ticketAuthenticator;
+    private long                          ticketLifetimeMillis;
+
+    /**
+     * Issues a session ticket after each successful password authentication and accepts it in
+     * place of the password until it expires.  Rotate keys by giving the signer a new current
+     * key while keeping the old one until its tickets have expired.  Register a
+     * {@link SessionTicketResponseFilter} to return tickets to clients.
+     *
+     * @param ticketSigner        the signer tickets are issued and verified with, for the
+     *                            {@value #TICKET_PURPOSE} purpose
+     * @param ticketAuthenticator maps a verified ticket, whose subject is the username, to its
+     *                            principal; it should be cheap, and may reject users who have
+     *                            since been disabled
+     * @param lifetime            how long a ticket is valid for
+     * @param unit                the unit of {@code lifetime}
+     * @return the current builder
+     */
+    public Builder<P> setSessionTickets(TokenSigner ticketSigner, Authenticator<SignedToken, P> ticketAuthenticator,
+                                        long lifetime, TimeUnit unit)
+    {
+      this.ticketSigner         = ticketSigner == null ? null : ticketSigner.forPurpose(TICKET_PURPOSE);
+      this.ticketAuthenticator  = ticketAuthenticator;
+      this.ticketLifetimeMillis = unit.toMillis(lifetime);
+      return this;
+    }
+
     @Override
     protected BasicCredentialAuthFilter<P> newInstance() {
-      return new BasicCredentialAuthFilter<>();
+      Preconditions.checkArgument(ticketSigner == null || ticketAuthenticator != null, "Ticket authenticator is not set");
+      Preconditions.checkArgument(ticketSigner == null || ticketLifetimeMillis > 0, "Ticket lifetime must be positive");
+
+      return new BasicCredentialAuthFilter<>(ticketSigner, ticketAuthenticator, ticketLifetimeMillis);
     }
   }
 
@@ -0,0 +1,124 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+
+/**
+ * Decodes the base64 {@code user:password} payload of a Basic {@code Authorization} header
+ * directly from the header string, without intermediate substrings or decode buffers.
+ *
+ * The thread-local decode buffer is zeroed after every parse, so it doesn't keep the last
+ * plaintext password around for the thread's lifetime.
+ */
+final class BasicCredentialsParser {
+
+  private static final int MAX_CACHED_BUFFER = 1024;
+
+  private static final byte[] DECODE_TABLE = new byte[128];
+
+  static {
+    for (int i=0;i<DECODE_TABLE.length;i++) DECODE_TABLE[i] = -1;
+
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    for (int i=0;i<alphabet.length();i++) {
+      DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+    }
+  }
+
+  private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+  private BasicCredentialsParser() {}
+
+  /**
+   * @param header the header value
+   * @param offset the offset of the base64 payload within the header
+   * @return the decoded credentials, or {@code null} if the payload is malformed
+   */
+  static BasicCredentials parse(String header, int offset) {
+    int    maxLength = ((header.length() - offset) / 4) * 3;
+    byte[] buffer    = BUFFER.get();
+
+    if (buffer.length < maxLength) {
+      buffer = new byte[maxLength];
+      if (maxLength <= MAX_CACHED_BUFFER) BUFFER.set(buffer);
+    }
+
+    try {
+      return parse(buffer, decode(header, offset, buffer));
+    } finally {
+      // A failed decode may have written part of the payload too
+      Arrays.fill(buffer, 0, maxLength, (byte) 0);
+    }
+  }
+
+  private static BasicCredentials parse(byte[] buffer, int length) {
+    for (int i=0;i<length;i++) {
+      if (buffer[i] == ':') {
+        if (i == 0) return null;
+
+        return new BasicCredentials(new String(buffer, 0, i, StandardCharsets.UTF_8),
+                                    new String(buffer, i + 1, length - i - 1, StandardCharsets.UTF_8));
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Decodes padded standard base64 from {@code source[offset..]} into {@code output}.
+   *
+   * @return the number of decoded bytes, or -1 if the input is not valid base64
+   */
+  private static int decode(String source, int offset, byte[] output) {
+    int end = source.length();
+
+    if ((end - offset) % 4 != 0) {
+      return -1;
+    }
+
+    if (end > offset && source.charAt(end - 1) == '=') end--;
+    if (end > offset && source.charAt(end - 1) == '=') end--;
+
+    int written = 0;
+    int bits    = 0;
+    int count   = 0;
+
+    for (int i=offset;i<end;i++) {
+      char c = source.charAt(i);
+      int  v = c < 128 ? DECODE_TABLE[c] : -1;
+
+      if (v < 0) {
+        return -1;
+      }
+
+      bits = (bits << 6) | v;
+
+      if (++count == 4) {
+        output[written++] = (byte) (bits >> 16);
+        output[written++] = (byte) (bits >> 8);
+        output[written++] = (byte) bits;
+        bits  = 0;
+        count = 0;
+      }
+    }
+
+    switch (count) {
+      case 0:
+        break;
+      case 2:
+        output[written++] = (byte) (bits >> 4);
+        break;
+      case 3:
+        output[written++] = (byte) (bits >> 10);
+        output[written++] = (byte) (bits >> 2);
+        break;
+      default:
+        return -1;
+    }
+
+    return written;
+  }
+}
@@ -0,0 +1,28 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An interface for authenticators which can look up many credentials in one round trip, such
+ * as with a multi-get.  Adapt one to an {@link Authenticator} with a
+ * {@link BatchingAuthenticator}.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public interface BatchAuthenticator<C, P> {
+
+  /**
+   * Given a batch of distinct credentials, return the principal for each.
+   *
+   * @param credentials the credentials to authenticate
+   * @return the result for each set of credentials; credentials which are missing from the map
+   *         are treated as invalid
+   * @throws AuthenticationException if the whole batch could not be authenticated
+   */
+  Map<C, Optional<P>> authenticate(Collection<C> credentials) throws AuthenticationException;
+}
@@ -0,0 +1,246 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * An {@link Authenticator} which merges concurrent calls into batches for a
+ * {@link BatchAuthenticator}.
+ *
+ * A dispatcher thread collects calls until either the batch is full or the window which opened
+ * with its first call has passed, then hands the batch's distinct credentials to the batch
+ * authenticator in one call.  Each caller waits, up to a timeout, for its own result.
+ *
+ * The dispatcher thread runs between {@link #start()} and {@link #stop()}.  Batch sizes and the
+ * time calls spend waiting to be dispatched are recorded in histograms.  Calls made while it
+ * isn't running, which find the queue full, which time out, or whose batch the executor rejects,
+ * fail with an {@link AuthenticationUnavailableException}.  Calls which have already timed out
+ * are left out of the batch they would have been dispatched in.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class BatchingAuthenticator<C, P> implements Authenticator<C, P>, Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchingAuthenticator.class);
+
+  private final Histogram batchSizes = new Histogram(new ExponentiallyDecayingReservoir());
+  private final Histogram waitTimes  = new Histogram(new ExponentiallyDecayingReservoir());
+
+  private final BatchAuthenticator<C, P>  underlying;
+  private final BlockingQueue<Call<C, P>> queue;
+  private final Executor                  executor;
+  private final int                       maxBatchSize;
+  private final long                      windowNanos;
+  private final long                      timeoutNanos;
+  private final Thread                    dispatcher;
+
+  private volatile boolean running;
+
+  /**
+   * Creates a batching authenticator which runs batches on its dispatcher thread.
+   *
+   * @param underlying   the batch authenticator
+   * @param maxBatchSize the largest batch to dispatch
+   * @param window       how long a batch stays open after its first call
+   * @param timeout      how long a caller waits for its result
+   * @param unit         the unit of {@code window} and {@code timeout}
+   */
+  public BatchingAuthenticator(BatchAuthenticator<C, P> underlying, int maxBatchSize, long window, long timeout, TimeUnit unit) {
+    this(underlying, maxBatchSize, window, timeout, unit, Runnable::run);
+  }
+
+  /**
+   * Creates a batching authenticator which runs batches on the given executor, so that a slow
+   * batch doesn't hold up collecting the next one.
+   *
+   * @param underlying   the batch authenticator
+   * @param maxBatchSize the largest batch to dispatch
+   * @param window       how long a batch stays open after its first call
+   * @param timeout      how long a caller waits for its result
+   * @param unit         the unit of {@code window} and {@code timeout}
+   * @param executor     the executor to run batches on
+   */
+  public BatchingAuthenticator(BatchAuthenticator<C, P> underlying, int maxBatchSize, long window, long timeout, TimeUnit unit, Executor executor) {
+    Preconditions.checkNotNull(underlying, "Underlying BatchAuthenticator is not set");
+    Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+    Preconditions.checkArgument(window >= 0, "Window must not be negative");
+    Preconditions.checkArgument(timeout > 0, "Timeout must be positive");
+
+    this.underlying   = underlying;
+    this.queue        = new ArrayBlockingQueue<>(maxBatchSize * 16);
+    this.executor     = Preconditions.checkNotNull(executor, "Executor is not set");
+    this.maxBatchSize = maxBatchSize;
+    this.windowNanos  = unit.toNanos(window);
+    this.timeoutNanos = unit.toNanos(timeout);
+    this.dispatcher   = new Thread(this::dispatch, "batching-authenticator");
+
+    this.dispatcher.setDaemon(true);
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    Call<C, P> call = new Call<>(credentials);
+
+    if (!running) {
+      throw new AuthenticationUnavailableException("Batching authenticator is not running");
+    }
+
+    if (!queue.offer(call)) {
+      throw new AuthenticationUnavailableException("Batch queue is full");
+    }
+
+    // stop() may have drained the queue between the check above and the offer
+    if (!running) {
+      call.result.cancel(false);
+      throw new AuthenticationUnavailableException("Batching authenticator is not running");
+    }
+
+    try {
+      return call.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      call.result.cancel(false);
+      throw new AuthenticationUnavailableException("Timed out waiting for batched authentication");
+    } catch (InterruptedException e) {
+      call.result.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new AuthenticationException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AuthenticationException) throw (AuthenticationException) e.getCause();
+      if (e.getCause() instanceof RuntimeException)        throw (RuntimeException) e.getCause();
+      throw new AuthenticationException(e.getCause());
+    }
+  }
+
+  /**
+   * @return the distribution of dispatched batch sizes
+   */
+  public Histogram getBatchSizeHistogram() {
+    return batchSizes;
+  }
+
+  /**
+   * @return the distribution of time calls spent waiting to be dispatched, in nanoseconds
+   */
+  public Histogram getWaitTimeHistogram() {
+    return waitTimes;
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    dispatcher.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    dispatcher.interrupt();
+  }
+
+  private void dispatch() {
+    List<Call<C, P>> batch = new ArrayList<>(maxBatchSize);
+
+    while (running) {
+      try {
+        batch.add(queue.take());
+
+        long deadline = System.nanoTime() + windowNanos;
+
+        while (batch.size() < maxBatchSize) {
+          Call<C, P> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          batch.add(next);
+        }
+
+        List<Call<C, P>> dispatched = new ArrayList<>(batch);
+        batch.clear();
+
+        try {
+          executor.execute(() -> authenticate(dispatched));
+        } catch (RuntimeException e) {
+          LOGGER.warn("Failed to dispatch batch", e);
+          fail(dispatched, new AuthenticationUnavailableException("Batch executor rejected the batch"));
+        }
+      } catch (InterruptedException e) {
+        break;
+      } catch (RuntimeException | Error e) {
+        // an inline batch's callers have already been failed by authenticate()
+        LOGGER.warn("Batch authentication failed", e);
+      }
+    }
+
+    AuthenticationException stopped = new AuthenticationUnavailableException("Batching authenticator stopped");
+
+    fail(batch, stopped);
+    fail(queue, stopped);
+  }
+
+  private void authenticate(List<Call<C, P>> batch) {
+    long                     now      = System.nanoTime();
+    Map<C, List<Call<C, P>>> distinct = new LinkedHashMap<>();
+
+    for (Call<C, P> call : batch) {
+      if (call.result.isDone()) continue;
+
+      waitTimes.update(now - call.enqueuedAt);
+      distinct.computeIfAbsent(call.credentials, ignored -> new ArrayList<>(1)).add(call);
+    }
+
+    if (distinct.isEmpty()) {
+      return;
+    }
+
+    batchSizes.update(distinct.size());
+
+    try {
+      Map<C, Optional<P>> results = underlying.authenticate(new ArrayList<>(distinct.keySet()));
+
+      for (Map.Entry<C, List<Call<C, P>>> entry : distinct.entrySet()) {
+        Optional<P> result = results.get(entry.getKey());
+
+        for (Call<C, P> call : entry.getValue()) {
+          call.result.complete(result != null ? result : Optional.empty());
+        }
+      }
+    } catch (AuthenticationException | RuntimeException e) {
+      fail(batch, e);
+    } catch (Error e) {
+      fail(batch, e);
+      throw e;
+    }
+  }
+
+  private static <C, P> void fail(Iterable<Call<C, P>> calls, Throwable cause) {
+    for (Call<C, P> call : calls) call.result.completeExceptionally(cause);
+  }
+
+  private static class Call<C, P> {
+    private final C                              credentials;
+    private final long                           enqueuedAt = System.nanoTime();
+    private final CompletableFuture<Optional<P>> result     = new CompletableFuture<>();
+
+    private Call(C credentials) {
+      this.credentials = credentials;
+    }
+  }
+}
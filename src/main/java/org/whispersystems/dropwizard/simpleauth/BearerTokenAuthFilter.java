@@ -0,0 +1,243 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An {@link AuthFilter} for stateless bearer tokens issued by a {@link TokenSigner}.
+ *
+ * The token is read from an {@code Authorization: Bearer} header, or optionally from a query
+ * parameter or cookie, and its signature and expiry are checked locally.  The authenticator is
+ * then only asked to map the verified {@link SignedToken} to a principal, and that result is
+ * cached until the token expires, keyed by a SHA-256 digest of the whole token so that live
+ * tokens aren't kept on the heap.
+ */
+@Priority(Priorities.AUTHENTICATION)
+public class BearerTokenAuthFilter<P> extends AuthFilter<SignedToken, P> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BearerTokenAuthFilter.class);
+
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  });
+
+  private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[512]);
+
+  private final TokenSigner                                           tokenSigner;
+  private final String                                                queryParameter;
+  private final String                                                cookieName;
+  private final Cache<CredentialsDigester.Digest, CachedPrincipal<P>> tokenCache;
+
+  private BearerTokenAuthFilter(TokenSigner tokenSigner, String queryParameter, String cookieName,
+                                Cache<CredentialsDigester.Digest, CachedPrincipal<P>> tokenCache)
+  {
+    this.tokenSigner    = tokenSigner;
+    this.queryParameter = queryParameter;
+    this.cookieName     = cookieName;
+    this.tokenCache     = tokenCache;
+  }
+
+  @Override
+  protected AuthResult authenticateRequest(final ContainerRequestContext requestContext) throws IOException {
+    String token  = requestContext.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+    int    offset = token == null ? -1 : AuthorizationHeaders.credentialsOffset(token, prefix);
+
+    if (offset < 0) {
+      token  = getFallbackToken(requestContext);
+      offset = 0;
+    }
+
+    if (token == null) {
+      return AuthResult.MISSING_CREDENTIALS;
+    }
+
+    int signature = token.lastIndexOf('.');
+
+    if (signature <= offset || signature == token.length() - 1) {
+      LOGGER.warn("Malformed {} token", prefix);
+      return AuthResult.MALFORMED_CREDENTIALS;
+    }
+
+    CredentialsDigester.Digest key = digest(token, offset);
+
+    if (key == null) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    long               now    = System.currentTimeMillis();
+    CachedPrincipal<P> cached = tokenCache.getIfPresent(key);
+
+    if (cached != null) {
+      if (cached.expiresAt > now) {
+        setAuthenticatedPrincipal(requestContext, cached.principal);
+        return AuthResult.AUTHENTICATED;
+      }
+
+      tokenCache.invalidate(key);
+    }
+
+    SignedToken verified = tokenSigner.verify(token, offset, token.length(), now);
+
+    if (verified == null) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    try {
+      Optional<P> principal = authenticateCredentials(verified);
+
+      if (principal.isPresent()) {
+        tokenCache.put(key, new CachedPrincipal<>(principal.get(), verified.getExpiresAt()));
+        setAuthenticatedPrincipal(requestContext, principal.get());
+        return AuthResult.AUTHENTICATED;
+      }
+
+      return AuthResult.INVALID_CREDENTIALS;
+    } catch (AuthenticationException e) {
+      LOGGER.warn("Error authenticating token", e);
+      return errorResult(e);
+    }
+  }
+
+  /**
+   * Discards all cached token verifications, for example after revoking a subject.
+   */
+  public void invalidateAll() {
+    tokenCache.invalidateAll();
+  }
+
+  /**
+   * @return the digest of {@code token} from {@code offset}, or {@code null} if it isn't ASCII,
+   *         which no valid token is
+   */
+  private static CredentialsDigester.Digest digest(String token, int offset) {
+    int    length = token.length() - offset;
+    byte[] buffer = BUFFER.get();
+
+    if (buffer.length < length) {
+      buffer = new byte[length];
+      if (length <= 4096) BUFFER.set(buffer);
+    }
+
+    for (int i=0;i<length;i++) {
+      char c = token.charAt(offset + i);
+      if (c > 127) return null;
+      buffer[i] = (byte) c;
+    }
+
+    MessageDigest digest = SHA256.get();
+    digest.reset();
+    digest.update(buffer, 0, length);
+
+    return new CredentialsDigester.Digest(digest.digest());
+  }
+
+  private String getFallbackToken(ContainerRequestContext requestContext) {
+    if (queryParameter != null) {
+      String token = requestContext.getUriInfo().getQueryParameters().getFirst(queryParameter);
+      if (token != null) return token;
+    }
+
+    if (cookieName != null) {
+      Cookie cookie = requestContext.getCookies().get(cookieName);
+      if (cookie != null) return cookie.getValue();
+    }
+
+    return null;
+  }
+
+  private static class CachedPrincipal<P> {
+    private final P    principal;
+    private final long expiresAt;
+
+    private CachedPrincipal(P principal, long expiresAt) {
+      this.principal = principal;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  public static class Builder<P> extends AuthFilter.AuthFilterBuilder<SignedToken, P, BearerTokenAuthFilter<P>> {
+
+    private TokenSigner      tokenSigner;
+    private String           queryParameter;
+    private String           cookieName;
+    private CacheBuilderSpec tokenCachePolicy = CacheBuilderSpec.parse("maximumSize=10000, expireAfterWrite=10m");
+
+    public Builder() {
+      setPrefix("Bearer");
+    }
+
+    /**
+     * Sets the signer tokens are verified with
+     *
+     * @param tokenSigner a token signer
+     * @return the current builder
+     */
+    public Builder<P> setTokenSigner(TokenSigner tokenSigner) {
+      this.tokenSigner = tokenSigner;
+      return this;
+    }
+
+    /**
+     * Also accepts tokens from the given query parameter, for example {@code access_token}
+     *
+     * @param queryParameter a query parameter name
+     * @return the current builder
+     */
+    public Builder<P> setQueryParameter(String queryParameter) {
+      this.queryParameter = queryParameter;
+      return this;
+    }
+
+    /**
+     * Also accepts tokens from the given cookie
+     *
+     * @param cookieName a cookie name
+     * @return the current builder
+     */
+    public Builder<P> setCookieName(String cookieName) {
+      this.cookieName = cookieName;
+      return this;
+    }
+
+    /**
+     * Sets the policy for cached token verifications.  Entries never outlive their token,
+     * whatever the policy.  Defaults to {@code maximumSize=10000, expireAfterWrite=10m}.
+     *
+     * @param tokenCachePolicy a cache policy
+     * @return the current builder
+     */
+    public Builder<P> setTokenCachePolicy(CacheBuilderSpec tokenCachePolicy) {
+      this.tokenCachePolicy = tokenCachePolicy;
+      return this;
+    }
+
+    @Override
+    protected BearerTokenAuthFilter<P> newInstance() {
+      Preconditions.checkArgument(tokenSigner != null, "Token signer is not set");
+      Preconditions.checkArgument(tokenCachePolicy != null, "Token cache policy is not set");
+
+      return new BearerTokenAuthFilter<>(tokenSigner, queryParameter, cookieName,
+                                         CacheBuilder.from(tokenCachePolicy).build());
+    }
+  }
+}
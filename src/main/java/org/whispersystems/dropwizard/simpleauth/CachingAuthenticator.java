@@ -0,0 +1,155 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An {@link Authenticator} decorator which caches the results of an underlying authenticator.
+ *
+ * Successful authentications and rejected credentials are held in two separate caches, so that
+ * negative results can be given a shorter lifetime than positive ones.  Credentials are never
+ * used as cache keys directly; they are first mapped through a key function, which by default
+ * is a {@link CredentialsDigester} with a random salt.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class CachingAuthenticator<C, P> implements Authenticator<C, P> {
+
+  private final Authenticator<C, P>   underlying;
+  private final Function<? super C, ?> keyFunction;
+  private final Cache<Object, P>       positiveCache;
+  private final Cache<Object, Boolean> negativeCache;
+
+  /**
+   * Creates a new caching authenticator which only caches successful authentications.
+   *
+   * @param underlying the authenticator to cache results from
+   * @param cacheSpec  the policy for cached principals
+   */
+  public CachingAuthenticator(Authenticator<C, P> underlying, CacheBuilderSpec cacheSpec) {
+    this(underlying, cacheSpec, null);
+  }
+
+  /**
+   * Creates a new caching authenticator.
+   *
+   * @param underlying        the authenticator to cache results from
+   * @param cacheSpec         the policy for cached principals
+   * @param negativeCacheSpec the policy for rejected credentials, or {@code null} to never
+   *                          cache rejections
+   */
+  public CachingAuthenticator(Authenticator<C, P> underlying,
+                              CacheBuilderSpec cacheSpec,
+                              CacheBuilderSpec negativeCacheSpec)
+  {
+    this(underlying, new CredentialsDigester(), cacheSpec, negativeCacheSpec);
+  }
+
+  /**
+   * Creates a new caching authenticator.
+   *
+   * @param underlying        the authenticator to cache results from
+   * @param keyFunction       maps credentials to the key they are cached under
+   * @param cacheSpec         the policy for cached principals
+   * @param negativeCacheSpec the policy for rejected credentials, or {@code null} to never
+   *                          cache rejections
+   */
+  public CachingAuthenticator(Authenticator<C, P> underlying,
+                              Function<? super C, ?> keyFunction,
+                              CacheBuilderSpec cacheSpec,
+                              CacheBuilderSpec negativeCacheSpec)
+  {
+    Preconditions.checkNotNull(underlying, "Underlying Authenticator is not set");
+    Preconditions.checkNotNull(keyFunction, "Key function is not set");
+    Preconditions.checkNotNull(cacheSpec, "Cache spec is not set");
+
+    this.underlying    = underlying;
+    this.keyFunction   = keyFunction;
+    this.positiveCache = CacheBuilder.from(cacheSpec).recordStats().build();
+    this.negativeCache = negativeCacheSpec == null ? null : CacheBuilder.from(negativeCacheSpec).recordStats().build();
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    Object key    = keyFunction.apply(credentials);
+    P      cached = positiveCache.getIfPresent(key);
+
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+
+    if (negativeCache != null && negativeCache.getIfPresent(key) != null) {
+      return Optional.empty();
+    }
+
+    Optional<P> principal = underlying.authenticate(credentials);
+
+    if      (principal.isPresent())  positiveCache.put(key, principal.get());
+    else if (negativeCache != null)  negativeCache.put(key, Boolean.TRUE);
+
+    return principal;
+  }
+
+  /**
+   * Discards any cached result for the given credentials.
+   *
+   * @param credentials the credentials to forget
+   */
+  public void invalidate(C credentials) {
+    Object key = keyFunction.apply(credentials);
+
+    positiveCache.invalidate(key);
+    if (negativeCache != null) negativeCache.invalidate(key);
+  }
+
+  /**
+   * Discards every cached authentication which resolved to the given principal, for example
+   * after that principal's password has changed.  Cached rejections aren't tied to a principal,
+   * so they are all discarded too, lest one keep rejecting the new password.
+   *
+   * @param principal the principal to forget
+   */
+  public void invalidatePrincipal(P principal) {
+    positiveCache.asMap().values().removeIf(principal::equals);
+    if (negativeCache != null) negativeCache.invalidateAll();
+  }
+
+  /**
+   * Discards all cached results.
+   */
+  public void invalidateAll() {
+    positiveCache.invalidateAll();
+    if (negativeCache != null) negativeCache.invalidateAll();
+  }
+
+  /**
+   * @return the number of cached principals
+   */
+  public long size() {
+    return positiveCache.size();
+  }
+
+  /**
+   * @return hit, miss and eviction counts for cached principals
+   */
+  public CacheStats stats() {
+    return positiveCache.stats();
+  }
+
+  /**
+   * @return hit, miss and eviction counts for cached rejections
+   */
+  public CacheStats negativeStats() {
+    return negativeCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : negativeCache.stats();
+  }
+
+}
@@ -0,0 +1,78 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An {@link Authorizer} decorator which caches role decisions per principal, shared across
+ * requests.
+ *
+ * @param <P> the type of principals the authorizer accepts
+ */
+public class CachingAuthorizer<P> implements Authorizer<P> {
+
+  private final Authorizer<P>                            underlying;
+  private final Cache<P, ConcurrentMap<String, Boolean>> decisions;
+
+  /**
+   * @param underlying the authorizer to cache decisions from
+   * @param cacheSpec  the policy for cached principals
+   */
+  public CachingAuthorizer(Authorizer<P> underlying, CacheBuilderSpec cacheSpec) {
+    Preconditions.checkNotNull(underlying, "Underlying Authorizer is not set");
+    Preconditions.checkNotNull(cacheSpec, "Cache spec is not set");
+
+    this.underlying = underlying;
+    this.decisions  = CacheBuilder.from(cacheSpec).recordStats().build();
+  }
+
+  @Override
+  public boolean authorize(P principal, String role) {
+    ConcurrentMap<String, Boolean> roles;
+
+    try {
+      roles = decisions.get(principal, ConcurrentHashMap::new);
+    } catch (ExecutionException e) {
+      throw new AssertionError(e);
+    }
+
+    Boolean decision = roles.get(role);
+
+    if (decision == null) {
+      decision = underlying.authorize(principal, role);
+      roles.put(role, decision);
+    }
+
+    return decision;
+  }
+
+  /**
+   * Discards every cached decision for the given principal.
+   *
+   * @param principal the principal to forget
+   */
+  public void invalidate(P principal) {
+    decisions.invalidate(principal);
+  }
+
+  /**
+   * Discards all cached decisions.
+   */
+  public void invalidateAll() {
+    decisions.invalidateAll();
+  }
+
+  /**
+   * @return hit, miss and eviction counts for cached principals
+   */
+  public CacheStats stats() {
+    return decisions.stats();
+  }
+}
@@ -0,0 +1,208 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link AuthFilter} which authenticates one principal type through several schemes.
+ *
+ * Requests are dispatched on the scheme token of their {@code Authorization} header straight
+ * to the filter registered for that scheme, without running the other filters.  Requests
+ * without a recognised scheme are offered to the fallback filters in order, for example one
+ * reading an API key from its own header.  The number of requests dispatched to each filter is
+ * recorded.  A throttled request is answered by the filter which throttled it, with that
+ * filter's {@code Retry-After}.
+ */
+@Priority(Priorities.AUTHENTICATION)
+public class ChainedAuthFilter<P> extends AuthFilter<Object, P> {
+
+  private final AuthFilter<?, P>[][] schemeFilters = newTable(128);
+  private final AuthFilter<?, P>[]   fallbackFilters;
+  private final AuthFilter<?, P>     primary;
+
+  private final Map<AuthFilter<?, P>, String>    names     = new LinkedHashMap<>();
+  private final Map<AuthFilter<?, P>, LongAdder> counts    = new LinkedHashMap<>();
+  private final LongAdder                        unmatched = new LongAdder();
+
+  private final ThreadLocal<AuthFilter<?, P>> throttledBy = new ThreadLocal<>();
+
+  private ChainedAuthFilter(List<AuthFilter<?, P>> schemes, Map<String, AuthFilter<?, P>> fallbacks) {
+    this.primary         = schemes.isEmpty() ? fallbacks.values().iterator().next() : schemes.get(0);
+    this.fallbackFilters = newRow(fallbacks.size());
+    this.principalType   = primary.principalType;
+    this.prefix          = primary.prefix;
+    this.realm           = primary.realm;
+
+    for (AuthFilter<?, P> filter : schemes) {
+      int bucket = bucket(filter.prefix.charAt(0));
+
+      schemeFilters[bucket] = Arrays.copyOf(schemeFilters[bucket], schemeFilters[bucket].length + 1);
+      schemeFilters[bucket][schemeFilters[bucket].length - 1] = filter;
+
+      names.put(filter, filter.prefix);
+      counts.put(filter, new LongAdder());
+    }
+
+    int index = 0;
+
+    for (Map.Entry<String, AuthFilter<?, P>> fallback : fallbacks.entrySet()) {
+      fallbackFilters[index++] = fallback.getValue();
+      names.put(fallback.getValue(), fallback.getKey());
+      counts.put(fallback.getValue(), new LongAdder());
+    }
+  }
+
+  @Override
+  protected AuthResult authenticateRequest(ContainerRequestContext requestContext) throws IOException {
+    String header = requestContext.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+
+    if (header != null && !header.isEmpty()) {
+      for (AuthFilter<?, P> filter : schemeFilters[bucket(header.charAt(0))]) {
+        if (AuthorizationHeaders.credentialsOffset(header, filter.prefix) > 0) {
+          counts.get(filter).increment();
+          return dispatched(filter, filter.authenticate(requestContext));
+        }
+      }
+    }
+
+    for (AuthFilter<?, P> filter : fallbackFilters) {
+      AuthResult result = filter.authenticate(requestContext);
+
+      if (result != AuthResult.MISSING_CREDENTIALS) {
+        counts.get(filter).increment();
+        return dispatched(filter, result);
+      }
+    }
+
+    unmatched.increment();
+    return AuthResult.MISSING_CREDENTIALS;
+  }
+
+  @Override
+  protected WebApplicationException unauthorized() {
+    return primary.unauthorized();
+  }
+
+  @Override
+  protected WebApplicationException tooManyAttempts() {
+    AuthFilter<?, P> filter = throttledBy.get();
+    throttledBy.remove();
+
+    return filter != null ? filter.tooManyAttempts() : super.tooManyAttempts();
+  }
+
+  private AuthResult dispatched(AuthFilter<?, P> filter, AuthResult result) {
+    // Rejection happens on the same thread, straight after authentication
+    if (result == AuthResult.THROTTLED) throttledBy.set(filter);
+    return result;
+  }
+
+  /**
+   * @return the number of requests handled by each filter, by scheme or fallback name, in
+   *         registration order
+   */
+  public Map<String, Long> getDispatchCounts() {
+    Map<String, Long> results = new LinkedHashMap<>();
+
+    for (Map.Entry<AuthFilter<?, P>, LongAdder> entry : counts.entrySet()) {
+      results.merge(names.get(entry.getKey()), entry.getValue().sum(), Long::sum);
+    }
+
+    return results;
+  }
+
+  /**
+   * @return the number of requests which no filter recognised credentials in
+   */
+  public long getUnmatchedCount() {
+    return unmatched.sum();
+  }
+
+  private static int bucket(char c) {
+    return Character.toLowerCase(c) & 127;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <P> AuthFilter<?, P>[][] newTable(int size) {
+    AuthFilter<?, P>[][] table = new AuthFilter[size][];
+    for (int i=0;i<size;i++) table[i] = newRow(0);
+    return table;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <P> AuthFilter<?, P>[] newRow(int size) {
+    return new AuthFilter[size];
+  }
+
+  public static class Builder<P> {
+
+    private final List<AuthFilter<?, P>>        schemes   = new ArrayList<>();
+    private final Map<String, AuthFilter<?, P>> fallbacks = new LinkedHashMap<>();
+
+    /**
+     * Adds a filter which handles requests whose {@code Authorization} scheme matches its
+     * prefix.  The first filter added also supplies the 401 challenge.  Prefixes must be
+     * unique, ignoring case.
+     *
+     * @param filter an auth filter
+     * @return the current builder
+     */
+    public Builder<P> addFilter(AuthFilter<?, P> filter) {
+      this.schemes.add(filter);
+      return this;
+    }
+
+    /**
+     * Adds a filter which is tried, in order, for requests whose {@code Authorization} scheme
+     * matched no other filter.
+     *
+     * @param name   the name the filter's dispatch count is reported under, which must be unique
+     * @param filter an auth filter
+     * @return the current builder
+     */
+    public Builder<P> addFallbackFilter(String name, AuthFilter<?, P> filter) {
+      Preconditions.checkArgument(!fallbacks.containsKey(name), "Duplicate fallback filter name: %s", name);
+      this.fallbacks.put(name, filter);
+      return this;
+    }
+
+    public ChainedAuthFilter<P> build() {
+      Preconditions.checkArgument(!schemes.isEmpty() || !fallbacks.isEmpty(), "No filters are set");
+
+      List<AuthFilter<?, P>> all = new ArrayList<>(schemes);
+      all.addAll(fallbacks.values());
+
+      Set<AuthFilter<?, P>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+      Set<String>           prefixes = new HashSet<>();
+
+      for (AuthFilter<?, P> filter : all) {
+        Preconditions.checkArgument(filter.principalType == all.get(0).principalType, "Filters must share a principal type");
+        Preconditions.checkArgument(distinct.add(filter), "Filter added more than once");
+      }
+
+      for (AuthFilter<?, P> filter : schemes) {
+        Preconditions.checkArgument(filter.prefix != null && !filter.prefix.isEmpty(), "Prefix is not set");
+        Preconditions.checkArgument(prefixes.add(filter.prefix.toLowerCase(Locale.ROOT)), "Duplicate prefix: %s", filter.prefix);
+      }
+
+      return new ChainedAuthFilter<>(schemes, fallbacks);
+    }
+  }
+}
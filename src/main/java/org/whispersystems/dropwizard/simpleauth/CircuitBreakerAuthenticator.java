@@ -0,0 +1,232 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An {@link Authenticator} decorator which protects a struggling backend: a bulkhead bounds the
+ * number of concurrent calls, and a circuit breaker stops calling it altogether after repeated
+ * failures.
+ *
+ * Calls beyond the bulkhead's limit, and calls while the breaker is open, fail immediately with
+ * an {@link AuthenticationUnavailableException}.  After the open interval one trial call is let
+ * through; if it succeeds the breaker closes, otherwise it opens again.  Only exceptions and
+ * errors count as failures, not rejected credentials.
+ *
+ * With a stale cache, principals from earlier successful authentications are served in place
+ * of an unavailable or failing backend.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class CircuitBreakerAuthenticator<C, P> implements Authenticator<C, P> {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final AtomicReference<State> state               = new AtomicReference<>(State.CLOSED);
+  private final AtomicInteger          consecutiveFailures = new AtomicInteger();
+
+  private final LongAdder opened      = new LongAdder();
+  private final LongAdder halfOpened  = new LongAdder();
+  private final LongAdder closed      = new LongAdder();
+  private final LongAdder rejected    = new LongAdder();
+  private final LongAdder staleServed = new LongAdder();
+
+  private final Function<Object, Object> keyFunction = new CredentialsDigester();
+
+  private final Authenticator<C, P> underlying;
+  private final Semaphore           bulkhead;
+  private final int                 failureThreshold;
+  private final long                openNanos;
+  private final Cache<Object, P>    staleCache;
+
+  private volatile long openedAt;
+
+  /**
+   * @param underlying       the authenticator to protect
+   * @param maxConcurrent    the maximum number of concurrent calls, or 0 for no limit
+   * @param failureThreshold the number of consecutive failures which opens the breaker, or 0
+   *                         to never open it
+   * @param openDuration     how long the breaker stays open before a trial call
+   * @param unit             the unit of {@code openDuration}
+   * @param staleCacheSpec   the policy for principals served during an outage, or
+   *                         {@code null} to serve none
+   */
+  public CircuitBreakerAuthenticator(Authenticator<C, P> underlying, int maxConcurrent,
+                                     int failureThreshold, long openDuration, TimeUnit unit,
+                                     CacheBuilderSpec staleCacheSpec)
+  {
+    Preconditions.checkNotNull(underlying, "Underlying Authenticator is not set");
+    Preconditions.checkArgument(maxConcurrent >= 0, "Max concurrent must not be negative");
+    Preconditions.checkArgument(failureThreshold >= 0, "Failure threshold must not be negative");
+    Preconditions.checkArgument(failureThreshold == 0 || openDuration > 0, "Open duration must be positive");
+
+    this.underlying       = underlying;
+    this.bulkhead         = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+    this.failureThreshold = failureThreshold;
+    this.openNanos        = unit.toNanos(openDuration);
+    this.staleCache       = staleCacheSpec == null ? null : CacheBuilder.from(staleCacheSpec).build();
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    if (bulkhead != null && !bulkhead.tryAcquire()) {
+      return fallback(credentials, new AuthenticationUnavailableException("Too many concurrent authentications"));
+    }
+
+    try {
+      if (!allowCall()) {
+        return fallback(credentials, new AuthenticationUnavailableException("Authentication circuit breaker is open"));
+      }
+
+      Optional<P> principal;
+
+      try {
+        principal = underlying.authenticate(credentials);
+      } catch (AuthenticationException e) {
+        onFailure();
+        return fallback(credentials, e);
+      } catch (RuntimeException e) {
+        onFailure();
+        if (staleCache == null) throw e;
+        return fallback(credentials, new AuthenticationException(e));
+      } catch (Error e) {
+        onFailure();
+        throw e;
+      }
+
+      onSuccess();
+
+      if (staleCache != null && principal.isPresent()) {
+        staleCache.put(keyFunction.apply(credentials), principal.get());
+      }
+
+      return principal;
+    } finally {
+      if (bulkhead != null) bulkhead.release();
+    }
+  }
+
+  /**
+   * @return the breaker's current state
+   */
+  public State getState() {
+    return state.get();
+  }
+
+  /**
+   * @return the number of calls refused by the bulkhead or the open breaker
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return the number of stale principals served in place of the backend
+   */
+  public long getStaleServedCount() {
+    return staleServed.sum();
+  }
+
+  /**
+   * Registers gauges for the breaker's state (the ordinal of {@link State}), its transition and
+   * rejection counts, and the bulkhead's free permits, under the given prefix.
+   *
+   * @param registry a metric registry
+   * @param prefix   the name prefix
+   */
+  void registerMetrics(MetricRegistry registry, String prefix) {
+    String breaker = MetricRegistry.name(prefix, "circuitBreaker");
+
+    registry.gauge(MetricRegistry.name(breaker, "state"),       () -> (Gauge<Integer>) () -> state.get().ordinal());
+    registry.gauge(MetricRegistry.name(breaker, "opened"),      () -> (Gauge<Long>) opened::sum);
+    registry.gauge(MetricRegistry.name(breaker, "halfOpened"),  () -> (Gauge<Long>) halfOpened::sum);
+    registry.gauge(MetricRegistry.name(breaker, "closed"),      () -> (Gauge<Long>) closed::sum);
+    registry.gauge(MetricRegistry.name(breaker, "rejected"),    () -> (Gauge<Long>) rejected::sum);
+    registry.gauge(MetricRegistry.name(breaker, "staleServed"), () -> (Gauge<Long>) staleServed::sum);
+
+    if (bulkhead != null) {
+      registry.gauge(MetricRegistry.name(prefix, "bulkhead", "available"), () -> (Gauge<Integer>) bulkhead::availablePermits);
+    }
+  }
+
+  private boolean allowCall() {
+    switch (state.get()) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        // Read only after seeing OPEN, since trip() writes it after opening the breaker
+        long opened = openedAt;
+
+        if (System.nanoTime() - opened >= openNanos && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+          halfOpened.increment();
+          return true;
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  private void onSuccess() {
+    consecutiveFailures.set(0);
+
+    if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+      closed.increment();
+    }
+  }
+
+  private void onFailure() {
+    if (failureThreshold == 0) {
+      return;
+    }
+
+    if (state.get() == State.HALF_OPEN) {
+      trip(State.HALF_OPEN);
+    } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      trip(State.CLOSED);
+    }
+  }
+
+  private void trip(State from) {
+    // Only the thread which opens the breaker starts its open window, so a late failure from a
+    // call which started while it was closed can't extend it.  Until the write lands, a caller
+    // may see the previous window's start, which at worst lets one trial call through early.
+    if (state.compareAndSet(from, State.OPEN)) {
+      openedAt = System.nanoTime();
+      consecutiveFailures.set(0);
+      opened.increment();
+    }
+  }
+
+  private Optional<P> fallback(C credentials, AuthenticationException cause) throws AuthenticationException {
+    if (cause instanceof AuthenticationUnavailableException) {
+      rejected.increment();
+    }
+
+    P stale = staleCache != null ? staleCache.getIfPresent(keyFunction.apply(credentials)) : null;
+
+    if (stale != null) {
+      staleServed.increment();
+      return Optional.of(stale);
+    }
+
+    throw cause;
+  }
+}
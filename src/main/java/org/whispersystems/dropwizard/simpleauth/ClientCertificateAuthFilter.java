@@ -0,0 +1,168 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Optional;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An {@link AuthFilter} for callers authenticated by a TLS client certificate, for mutual TLS
+ * terminated by the servlet container.
+ *
+ * The verified peer certificate chain is read from the request's
+ * {@value #CERTIFICATE_PROPERTY} property, leaf first, and the authenticator is asked to map it
+ * to a principal.  That result is cached by the SHA-256 fingerprint of the leaf certificate
+ * until the certificate expires, so no passwords are hashed on this path.  Requests without a
+ * chain, or whose leaf certificate is not currently valid, are rejected.
+ *
+ * Requests authenticated this way always report {@link SecurityContext#isSecure()}.
+ */
+@Priority(Priorities.AUTHENTICATION)
+public class ClientCertificateAuthFilter<P> extends AuthFilter<X509Certificate[], P> {
+
+  /**
+   * The request property servlet containers expose the peer certificate chain under.
+   */
+  public static final String CERTIFICATE_PROPERTY = "javax.servlet.request.X509Certificate";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClientCertificateAuthFilter.class);
+
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  });
+
+  private final Cache<CredentialsDigester.Digest, CachedPrincipal<P>> certificateCache;
+
+  private ClientCertificateAuthFilter(Cache<CredentialsDigester.Digest, CachedPrincipal<P>> certificateCache) {
+    this.certificateCache = certificateCache;
+  }
+
+  @Override
+  protected AuthResult authenticateRequest(final ContainerRequestContext requestContext) throws IOException {
+    Object property = requestContext.getProperty(CERTIFICATE_PROPERTY);
+
+    if (!(property instanceof X509Certificate[]) || ((X509Certificate[]) property).length == 0) {
+      return AuthResult.MISSING_CREDENTIALS;
+    }
+
+    X509Certificate[] chain = (X509Certificate[]) property;
+    X509Certificate   leaf  = chain[0];
+    long              now   = System.currentTimeMillis();
+
+    if (leaf.getNotBefore().getTime() > now || leaf.getNotAfter().getTime() <= now) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    CredentialsDigester.Digest fingerprint;
+
+    try {
+      MessageDigest digest = SHA256.get();
+      digest.reset();
+      fingerprint = new CredentialsDigester.Digest(digest.digest(leaf.getEncoded()));
+    } catch (CertificateEncodingException e) {
+      LOGGER.warn("Malformed client certificate", e);
+      return AuthResult.MALFORMED_CREDENTIALS;
+    }
+
+    CachedPrincipal<P> cached = certificateCache.getIfPresent(fingerprint);
+
+    if (cached != null) {
+      if (cached.expiresAt > now) {
+        setAuthenticatedPrincipal(requestContext, cached.principal);
+        return AuthResult.AUTHENTICATED;
+      }
+
+      certificateCache.invalidate(fingerprint);
+    }
+
+    try {
+      Optional<P> principal = authenticateCredentials(chain);
+
+      if (principal.isPresent()) {
+        certificateCache.put(fingerprint, new CachedPrincipal<>(principal.get(), leaf.getNotAfter().getTime()));
+        setAuthenticatedPrincipal(requestContext, principal.get());
+        return AuthResult.AUTHENTICATED;
+      }
+
+      return AuthResult.INVALID_CREDENTIALS;
+    } catch (AuthenticationException e) {
+      LOGGER.warn("Error authenticating client certificate", e);
+      return errorResult(e);
+    }
+  }
+
+  @Override
+  protected AuthSecurityContext<P> newSecurityContext(ContainerRequestContext requestContext, P principal) {
+    return new AuthSecurityContext<>(principal, true, getAuthenticationScheme(), authorizer);
+  }
+
+  @Override
+  protected String getAuthenticationScheme() {
+    return SecurityContext.CLIENT_CERT_AUTH;
+  }
+
+  /**
+   * Discards all cached certificate authentications, for example after revoking a certificate.
+   */
+  public void invalidateAll() {
+    certificateCache.invalidateAll();
+  }
+
+  private static class CachedPrincipal<P> {
+    private final P    principal;
+    private final long expiresAt;
+
+    private CachedPrincipal(P principal, long expiresAt) {
+      this.principal = principal;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  public static class Builder<P> extends AuthFilter.AuthFilterBuilder<X509Certificate[], P, ClientCertificateAuthFilter<P>> {
+
+    private CacheBuilderSpec certificateCachePolicy = CacheBuilderSpec.parse("maximumSize=10000, expireAfterWrite=10m");
+
+    public Builder() {
+      setPrefix("Certificate");
+    }
+
+    /**
+     * Sets the policy for cached certificate authentications.  Entries never outlive their
+     * certificate, whatever the policy.  Defaults to
+     * {@code maximumSize=10000, expireAfterWrite=10m}.
+     *
+     * @param certificateCachePolicy a cache policy
+     * @return the current builder
+     */
+    public Builder<P> setCertificateCachePolicy(CacheBuilderSpec certificateCachePolicy) {
+      this.certificateCachePolicy = certificateCachePolicy;
+      return this;
+    }
+
+    @Override
+    protected ClientCertificateAuthFilter<P> newInstance() {
+      Preconditions.checkArgument(certificateCachePolicy != null, "Certificate cache policy is not set");
+
+      return new ClientCertificateAuthFilter<>(CacheBuilder.from(certificateCachePolicy).build());
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import java.util.function.Consumer;
+
+/**
+ * The shared tier of a cluster-wide authentication cache, such as a Redis or Memcached
+ * deployment, used by {@link ClusterCachingAuthenticator}.
+ *
+ * Keys are digests of credentials (see {@link ClusterCachingAuthenticator#digestedKeys(byte[])}),
+ * so implementations never see plaintext secrets.  Implementations are responsible for
+ * serializing principals and for expiring entries.
+ *
+ * @param <P> the type of cached principals
+ */
+public interface ClusterAuthCache<P> {
+
+  /**
+   * @param key a credentials key
+   * @return the principal cached under the key, or {@code null}
+   */
+  P get(String key);
+
+  /**
+   * @param key       a credentials key
+   * @param principal the principal the credentials authenticated as
+   */
+  void put(String key, P principal);
+
+  /**
+   * Removes every entry for the principal and notifies every subscriber in the cluster,
+   * including those on this node.
+   *
+   * @param principal the principal to invalidate
+   */
+  void invalidate(P principal);
+
+  /**
+   * @param listener called with each principal invalidated anywhere in the cluster, so that
+   *                 local near-caches can drop it too
+   */
+  void subscribe(Consumer<P> listener);
+}
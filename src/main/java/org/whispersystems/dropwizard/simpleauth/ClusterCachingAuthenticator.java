@@ -0,0 +1,107 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+
+/**
+ * An {@link Authenticator} decorator which shares successful authentications across a cluster
+ * through a {@link ClusterAuthCache}, so that only the first node to see a set of credentials
+ * pays for the underlying lookup.
+ *
+ * This is the remote tier; put a {@link CachingAuthenticator} in front of it as a near-cache,
+ * subscribed to the cluster cache's invalidations.  {@code AuthFilterBuilder} does both when
+ * given a cluster cache.  Rejections are never shared, and a failing remote tier is logged and
+ * bypassed rather than failing authentication.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class ClusterCachingAuthenticator<C, P> implements Authenticator<C, P> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterCachingAuthenticator.class);
+
+  private final LongAdder hits   = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private final Authenticator<C, P>         underlying;
+  private final ClusterAuthCache<P>         cache;
+  private final Function<? super C, String> keyFunction;
+
+  /**
+   * @param underlying  the authenticator to share results from
+   * @param cache       the cluster cache
+   * @param keyFunction maps credentials to the key they are shared under; every node must map
+   *                    the same credentials to the same key
+   */
+  public ClusterCachingAuthenticator(Authenticator<C, P> underlying, ClusterAuthCache<P> cache, Function<? super C, String> keyFunction) {
+    this.underlying  = Preconditions.checkNotNull(underlying, "Underlying Authenticator is not set");
+    this.cache       = Preconditions.checkNotNull(cache, "Cluster cache is not set");
+    this.keyFunction = Preconditions.checkNotNull(keyFunction, "Key function is not set");
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    String key    = keyFunction.apply(credentials);
+    P      cached = null;
+
+    try {
+      cached = cache.get(key);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Cluster cache lookup failed", e);
+    }
+
+    if (cached != null) {
+      hits.increment();
+      return Optional.of(cached);
+    }
+
+    misses.increment();
+
+    Optional<P> principal = underlying.authenticate(credentials);
+
+    if (principal.isPresent()) {
+      try {
+        cache.put(key, principal.get());
+      } catch (RuntimeException e) {
+        LOGGER.warn("Cluster cache store failed", e);
+      }
+    }
+
+    return principal;
+  }
+
+  /**
+   * @return the number of authentications served by the cluster cache
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of authentications passed to the underlying authenticator
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Keys Basic credentials by a salted digest, encoded as a string.  Every node must be given
+   * the same salt, which should be kept as secret as the cluster cache itself.
+   *
+   * @param sharedSalt the salt shared by all nodes
+   * @return a key function for Basic credentials
+   */
+  public static Function<BasicCredentials, String> digestedKeys(byte[] sharedSalt) {
+    CredentialsDigester digester = new CredentialsDigester(sharedSalt);
+    return credentials -> Base64.getEncoder().encodeToString(digester.digest(credentials).getBytes());
+  }
+}
@@ -0,0 +1,116 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An {@link Authenticator} decorator which lets concurrent calls with equal credentials share a
+ * single call to the underlying authenticator.
+ *
+ * The first caller for a set of credentials performs the lookup; every caller that arrives while
+ * it is in flight waits, up to a bounded time, for the same result or the same
+ * {@link AuthenticationException}.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class CoalescingAuthenticator<C, P> implements Authenticator<C, P> {
+
+  private final ConcurrentMap<C, CompletableFuture<Optional<P>>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder calls     = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder timeouts  = new LongAdder();
+
+  private final Authenticator<C, P> underlying;
+  private final long                maxWaitNanos;
+
+  /**
+   * @param underlying the authenticator to coalesce calls to
+   * @param maxWait    how long a caller waits on another caller's in-flight lookup
+   * @param unit       the unit of {@code maxWait}
+   */
+  public CoalescingAuthenticator(Authenticator<C, P> underlying, long maxWait, TimeUnit unit) {
+    Preconditions.checkNotNull(underlying, "Underlying Authenticator is not set");
+    Preconditions.checkArgument(maxWait > 0, "Max wait must be positive");
+
+    this.underlying   = underlying;
+    this.maxWaitNanos = unit.toNanos(maxWait);
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    calls.increment();
+
+    CompletableFuture<Optional<P>> pending  = new CompletableFuture<>();
+    CompletableFuture<Optional<P>> existing = inFlight.putIfAbsent(credentials, pending);
+
+    if (existing == null) {
+      try {
+        Optional<P> principal = underlying.authenticate(credentials);
+        pending.complete(principal);
+        return principal;
+      } catch (AuthenticationException | RuntimeException e) {
+        pending.completeExceptionally(e);
+        throw e;
+      } finally {
+        if (!pending.isDone()) pending.completeExceptionally(new AuthenticationException("In-flight authentication failed"));
+        inFlight.remove(credentials, pending);
+      }
+    }
+
+    coalesced.increment();
+
+    try {
+      return existing.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      timeouts.increment();
+      throw new AuthenticationException("Timed out waiting for in-flight authentication");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuthenticationException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AuthenticationException) throw (AuthenticationException) e.getCause();
+      if (e.getCause() instanceof RuntimeException)        throw (RuntimeException) e.getCause();
+      throw new AuthenticationException(e.getCause());
+    }
+  }
+
+  /**
+   * @return the total number of calls made to this authenticator
+   */
+  public long getCallCount() {
+    return calls.sum();
+  }
+
+  /**
+   * @return the number of calls which were served by another caller's in-flight lookup
+   */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  /**
+   * @return the number of coalesced calls which gave up waiting
+   */
+  public long getTimeoutCount() {
+    return timeouts.sum();
+  }
+
+  /**
+   * @return the number of lookups currently in flight
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,119 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+
+/**
+ * Maps credentials to a cache key which does not retain the plaintext secret.
+ *
+ * {@link BasicCredentials} are reduced to a salted SHA-256 digest of the length-prefixed
+ * username and password, so that no two distinct pairs share an input.
+ * Any other credential type is assumed to be safe to use as a key and is returned unchanged.
+ */
+public class CredentialsDigester implements Function<Object, Object> {
+
+  private static final int SALT_LENGTH = 16;
+
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  });
+
+  private final byte[] salt;
+
+  /**
+   * Creates a digester with a random salt, suitable for keys that never leave this process.
+   */
+  public CredentialsDigester() {
+    this(randomSalt());
+  }
+
+  /**
+   * Creates a digester with the given salt.  Processes which share a salt produce the same
+   * keys for the same credentials.
+   *
+   * @param salt the salt mixed into every digest
+   */
+  public CredentialsDigester(byte[] salt) {
+    Preconditions.checkArgument(salt != null && salt.length > 0, "Salt is not set");
+    this.salt = salt.clone();
+  }
+
+  @Override
+  public Object apply(Object credentials) {
+    if (credentials instanceof BasicCredentials) {
+      return digest((BasicCredentials) credentials);
+    }
+
+    return credentials;
+  }
+
+  /**
+   * @param credentials a username and password
+   * @return the salted digest of the given credentials
+   */
+  public Digest digest(BasicCredentials credentials) {
+    MessageDigest digest = SHA256.get();
+    digest.reset();
+    digest.update(salt);
+    update(digest, credentials.getUsername().getBytes(StandardCharsets.UTF_8));
+    update(digest, credentials.getPassword().getBytes(StandardCharsets.UTF_8));
+
+    return new Digest(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, byte[] field) {
+    digest.update((byte) (field.length >>> 24));
+    digest.update((byte) (field.length >>> 16));
+    digest.update((byte) (field.length >>> 8));
+    digest.update((byte) field.length);
+    digest.update(field);
+  }
+
+  private static byte[] randomSalt() {
+    byte[] salt = new byte[SALT_LENGTH];
+    new SecureRandom().nextBytes(salt);
+    return salt;
+  }
+
+  /**
+   * An opaque, comparable digest of a set of credentials.
+   */
+  public static final class Digest {
+    private final byte[] value;
+    private final int    hashCode;
+
+    Digest(byte[] value) {
+      this.value    = value;
+      this.hashCode = Arrays.hashCode(value);
+    }
+
+    /**
+     * @return a copy of the raw digest bytes
+     */
+    public byte[] getBytes() {
+      return value.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Digest && Arrays.equals(value, ((Digest) other).value);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Supplier;
+
+/**
+ * Digests a request entity as it is read and checks it against a signed digest at end of
+ * stream, so that the body is verified without being buffered.  A stream which is closed early
+ * is drained first, so that the check always happens.
+ */
+class DigestVerifyingInputStream extends FilterInputStream {
+
+  private final MessageDigest                     digest;
+  private final byte[]                            expected;
+  private final Supplier<WebApplicationException> mismatch;
+
+  private boolean verified;
+
+  DigestVerifyingInputStream(InputStream in, byte[] expected, Supplier<WebApplicationException> mismatch) {
+    super(in);
+    this.expected = expected;
+    this.mismatch = mismatch;
+
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+
+    if (b < 0) verify();
+    else       digest.update((byte) b);
+
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int read = in.read(buffer, offset, length);
+
+    if (read < 0) verify();
+    else          digest.update(buffer, offset, read);
+
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+
+    byte[] buffer  = new byte[(int) Math.min(n, 8192)];
+    long   skipped = 0;
+
+    while (skipped < n) {
+      int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+      if (read < 0) break;
+      skipped += read;
+    }
+
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readLimit) {}
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!verified) {
+        byte[] buffer = new byte[8192];
+        while (read(buffer, 0, buffer.length) >= 0);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private void verify() {
+    if (verified) return;
+
+    verified = true;
+
+    if (!MessageDigest.isEqual(digest.digest(), expected)) {
+      throw mismatch.get();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link AuthListener} which records the latency of each {@link AuthStage} in an HdrHistogram
+ * {@link Recorder} per principal type and realm, for export to an external tracing or metrics
+ * system.
+ *
+ * Recording is wait-free and allocation-free once a principal type and realm have been seen.
+ * Principal injection, which has no realm, is recorded per principal type alone, so it never
+ * shares recorders with a filter's realm.  Requires the optional
+ * {@code org.hdrhistogram:HdrHistogram} dependency.
+ */
+public class HdrHistogramAuthListener implements AuthListener {
+
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, Recorder[]>> recorders          = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, Recorder[]>                        injectionRecorders = new ConcurrentHashMap<>();
+
+  private final int significantDigits;
+
+  /**
+   * Records with two significant digits.
+   */
+  public HdrHistogramAuthListener() {
+    this(2);
+  }
+
+  /**
+   * @param significantDigits the precision of recorded values, between 0 and 5
+   */
+  public HdrHistogramAuthListener(int significantDigits) {
+    this.significantDigits = significantDigits;
+  }
+
+  @Override
+  public void onEnd(AuthStage stage, Class<?> principalType, String realm, long durationNanos, AuthResult result) {
+    getRecorders(principalType, realm)[stage.ordinal()].recordValue(durationNanos);
+  }
+
+  /**
+   * Returns the latencies recorded for a stage since the previous call for that principal type,
+   * realm and stage, and starts a new interval.
+   *
+   * @param principalType a principal type, or {@code Optional} for optional injection
+   * @param realm         a realm, or {@code null} for principal injection
+   * @param stage         a stage
+   * @return the interval's latencies, in nanoseconds
+   */
+  public Histogram getIntervalHistogram(Class<?> principalType, String realm, AuthStage stage) {
+    return getRecorders(principalType, realm)[stage.ordinal()].getIntervalHistogram();
+  }
+
+  /**
+   * @return the filter recorders seen so far, by principal type and realm, and indexed by
+   *         {@link AuthStage#ordinal()}
+   */
+  public Map<Class<?>, ConcurrentMap<String, Recorder[]>> getRecorders() {
+    return recorders;
+  }
+
+  /**
+   * @return the principal injection recorders seen so far, by principal type, and indexed by
+   *         {@link AuthStage#ordinal()}
+   */
+  public Map<Class<?>, Recorder[]> getInjectionRecorders() {
+    return injectionRecorders;
+  }
+
+  private Recorder[] getRecorders(Class<?> principalType, String realm) {
+    Class<?> type = principalType == null ? Object.class : principalType;
+
+    if (realm == null) {
+      Recorder[] stages = injectionRecorders.get(type);
+      return stages != null ? stages : injectionRecorders.computeIfAbsent(type, ignored -> newRecorders());
+    }
+
+    ConcurrentMap<String, Recorder[]> realms = recorders.get(type);
+
+    if (realms == null) {
+      realms = recorders.computeIfAbsent(type, ignored -> new ConcurrentHashMap<>());
+    }
+
+    Recorder[] stages = realms.get(realm);
+    return stages != null ? stages : realms.computeIfAbsent(realm, ignored -> newRecorders());
+  }
+
+  private Recorder[] newRecorders() {
+    Recorder[] created = new Recorder[AuthStage.values().length];
+
+    for (int i=0;i<created.length;i++) {
+      created[i] = new Recorder(significantDigits);
+    }
+
+    return created;
+  }
+}
@@ -0,0 +1,69 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A reference {@link ClusterAuthCache} which lives in a single process.  Filters on simulated
+ * "nodes" which share an instance behave as they would sharing a real remote tier, which makes
+ * it suitable for tests and for single-node deployments.
+ *
+ * @param <P> the type of cached principals
+ */
+public class InMemoryClusterAuthCache<P> implements ClusterAuthCache<P> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryClusterAuthCache.class);
+
+  private final List<Consumer<P>> listeners = new CopyOnWriteArrayList<>();
+
+  private final Cache<String, P> cache;
+
+  /**
+   * @param cacheSpec the policy for cached principals
+   */
+  public InMemoryClusterAuthCache(CacheBuilderSpec cacheSpec) {
+    this.cache = CacheBuilder.from(cacheSpec).build();
+  }
+
+  @Override
+  public P get(String key) {
+    return cache.getIfPresent(key);
+  }
+
+  @Override
+  public void put(String key, P principal) {
+    cache.put(key, principal);
+  }
+
+  @Override
+  public void invalidate(P principal) {
+    cache.asMap().values().removeIf(principal::equals);
+
+    for (Consumer<P> listener : listeners) {
+      try {
+        listener.accept(principal);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Invalidation listener failed", e);
+      }
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<P> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * @return the number of cached principals
+   */
+  public long size() {
+    return cache.size();
+  }
+}
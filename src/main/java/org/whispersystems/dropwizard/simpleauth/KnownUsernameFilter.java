@@ -0,0 +1,246 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * A Bloom filter of known usernames, for rejecting credentials for users who don't exist
+ * without calling the authenticator.  Pass it to
+ * {@link AuthFilter.AuthFilterBuilder#setCredentialPreFilter(Predicate)}, adapted with
+ * {@link #forCredentials(Function)}.
+ *
+ * A username which isn't in the filter certainly isn't known; one which is might still be
+ * unknown, at about the configured false positive rate, and goes on to the authenticator.
+ * Users created since the last rebuild are rejected until the next one, unless they are
+ * {@link #add(String) added} as they are created.
+ *
+ * The filter is first built in {@link #start()}, and rebuilt periodically after that.  Until a
+ * build succeeds every username passes.  Rebuilds load every username from the source, build a
+ * new filter, and swap it in with a single volatile write.  A rebuild which fails is logged and
+ * the current filter is kept.  Usernames {@link #add(String) added} are also kept aside and put
+ * into every rebuilt filter, until a rebuild which loaded the source after they were added
+ * has been swapped in.
+ *
+ * Rejecting unknown usernames early makes them much faster to refuse than known ones, which
+ * undoes the timing equalisation of {@link PasswordVerifier#rejectUnknownUser()}: a client can
+ * tell which usernames exist from how long their 401 takes.  Only use it where usernames aren't
+ * secret, or where that is an acceptable trade for shedding credential stuffing load.
+ */
+public class KnownUsernameFilter implements Predicate<String>, Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KnownUsernameFilter.class);
+
+  private final LongAdder passed   = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder rebuilds = new LongAdder();
+
+  private final Map<String, Long> added    = new ConcurrentHashMap<>();
+  private final AtomicLong        sequence = new AtomicLong();
+
+  private final Supplier<? extends Collection<String>> source;
+  private final double                                falsePositiveRate;
+  private final long                                  rebuildIntervalMillis;
+  private final ScheduledExecutorService              scheduler;
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * @param source            supplies every known username
+   * @param falsePositiveRate the rate at which unknown usernames may pass, for example 0.01
+   * @param rebuildInterval   how often to rebuild the filter, once started
+   * @param unit              the unit of {@code rebuildInterval}
+   */
+  public KnownUsernameFilter(Supplier<? extends Collection<String>> source, double falsePositiveRate,
+                             long rebuildInterval, TimeUnit unit)
+  {
+    Preconditions.checkNotNull(source, "Username source is not set");
+    Preconditions.checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "False positive rate must be between 0 and 1");
+    Preconditions.checkArgument(rebuildInterval > 0, "Rebuild interval must be positive");
+
+    this.source                = source;
+    this.falsePositiveRate     = falsePositiveRate;
+    this.rebuildIntervalMillis = unit.toMillis(rebuildInterval);
+    this.scheduler             = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "known-username-filter-rebuilder");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param username a username
+   * @return {@code false} if the username is certainly unknown
+   */
+  @Override
+  public boolean test(String username) {
+    Snapshot current = snapshot;
+
+    if (current == null || current.usernames.mightContain(username)) {
+      passed.increment();
+      return true;
+    }
+
+    rejected.increment();
+    return false;
+  }
+
+  /**
+   * @param usernameFunction extracts the username from credentials
+   * @param <C>              the type of credentials
+   * @return a predicate which tests the credentials' username against this filter
+   */
+  public <C> Predicate<C> forCredentials(Function<? super C, String> usernameFunction) {
+    return credentials -> test(usernameFunction.apply(credentials));
+  }
+
+  /**
+   * Adds a username to the filter, so a user created since the last rebuild isn't rejected
+   * until the next one.  Call it once the user is stored: the username is also put into every
+   * rebuilt filter until a rebuild which loads the source afterwards has been swapped in, so a
+   * rebuild already under way doesn't lose it.
+   *
+   * @param username a new username
+   */
+  public void add(String username) {
+    added.put(username, sequence.incrementAndGet());
+
+    Snapshot current = snapshot;
+
+    if (current != null) {
+      current.usernames.put(username);
+    }
+  }
+
+  /**
+   * Rebuilds the filter from the source and swaps it in.
+   *
+   * @return {@code true} if a new filter was swapped in
+   */
+  public boolean rebuild() {
+    try {
+      long     loadedAfter = sequence.get();
+      Snapshot rebuilt     = Snapshot.build(source.get(), falsePositiveRate);
+
+      putAdded(rebuilt);
+      this.snapshot = rebuilt;
+
+      // Anything added while the filter was built went into the old one
+      putAdded(rebuilt);
+      added.values().removeIf(addedAt -> addedAt <= loadedAfter);
+
+      rebuilds.increment();
+
+      LOGGER.info("Rebuilt known username filter with {} usernames", rebuilt.size);
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to rebuild known username filter", e);
+      return false;
+    }
+  }
+
+  /**
+   * @return the number of usernames the current filter was built from, or 0 before it is built
+   */
+  public int size() {
+    Snapshot current = snapshot;
+    return current != null ? current.size : 0;
+  }
+
+  /**
+   * @return the size of the current filter's bit array, in bits, or 0 before it is built
+   */
+  public long getBitSize() {
+    Snapshot current = snapshot;
+    return current != null ? current.bits : 0;
+  }
+
+  /**
+   * @return the current filter's estimated false positive rate, or 1 before it is built
+   */
+  public double getExpectedFalsePositiveRate() {
+    Snapshot current = snapshot;
+    return current != null ? current.usernames.expectedFpp() : 1;
+  }
+
+  /**
+   * @return the number of usernames which passed the filter
+   */
+  public long getPassedCount() {
+    return passed.sum();
+  }
+
+  /**
+   * @return the number of usernames rejected as certainly unknown
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return the number of times the filter has been built, including the first build
+   */
+  public long getRebuildCount() {
+    return rebuilds.sum();
+  }
+
+  private void putAdded(Snapshot target) {
+    for (String username : added.keySet()) {
+      target.usernames.put(username);
+    }
+  }
+
+  @Override
+  public void start() {
+    rebuild();
+    scheduler.scheduleWithFixedDelay(this::rebuild, rebuildIntervalMillis, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  private static class Snapshot {
+    private final BloomFilter<CharSequence> usernames;
+    private final int                       size;
+    private final long                      bits;
+
+    private Snapshot(BloomFilter<CharSequence> usernames, int size, long bits) {
+      this.usernames = usernames;
+      this.size      = size;
+      this.bits      = bits;
+    }
+
+    private static Snapshot build(Collection<String> usernames, double falsePositiveRate) {
+      int                       expected = Math.max(usernames.size(), 1);
+      BloomFilter<CharSequence> filter   = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected, falsePositiveRate);
+
+      for (String username : usernames) {
+        filter.put(username);
+      }
+
+      // The same sizing BloomFilter.create() uses, which it doesn't expose
+      long bits = (long) (-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+      return new Snapshot(filter, usernames.size(), bits);
+    }
+  }
+}
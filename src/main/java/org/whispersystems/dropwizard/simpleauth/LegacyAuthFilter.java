@@ -0,0 +1,38 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import java.io.IOException;
+
+/**
+ * A base class for auth filters written before {@link #authenticateRequest(ContainerRequestContext)}
+ * existed, which authenticate in {@link #filter(ContainerRequestContext)} and reject by throwing.
+ *
+ * Their {@code filter()} is run to authenticate the request, and a normal return is mapped to
+ * {@link AuthResult#AUTHENTICATED} and a thrown {@link WebApplicationException} to the result
+ * its status implies, so they still work as optional {@code @Auth} parameters and in a
+ * {@link ChainedAuthFilter}.  New filters should extend {@link AuthFilter} directly.
+ *
+ * @param <C> the type of credentials the filter extracts
+ * @param <P> the type of principals the filter authenticates
+ */
+public abstract class LegacyAuthFilter<C, P> extends AuthFilter<C, P> {
+
+  @Override
+  public abstract void filter(ContainerRequestContext requestContext) throws IOException;
+
+  @Override
+  protected final AuthResult authenticateRequest(ContainerRequestContext requestContext) throws IOException {
+    try {
+      filter(requestContext);
+      return AuthResult.AUTHENTICATED;
+    } catch (WebApplicationException e) {
+      switch (e.getResponse().getStatus()) {
+        case 429: return AuthResult.THROTTLED;
+        case 500: return AuthResult.ERROR;
+        case 503: return AuthResult.UNAVAILABLE;
+        default:  return AuthResult.INVALID_CREDENTIALS;
+      }
+    }
+  }
+}
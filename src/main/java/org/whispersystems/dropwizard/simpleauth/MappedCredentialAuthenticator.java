@@ -0,0 +1,52 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+
+/**
+ * An {@link Authenticator} for Basic credentials backed by a {@link MappedCredentialStore},
+ * checking passwords with a {@link PasswordVerifier}.
+ *
+ * Unknown usernames are rejected with {@link PasswordVerifier#rejectUnknownUser()}, so they take
+ * as long as a wrong password.
+ *
+ * @param <P> the type of principals the authenticator returns
+ */
+public class MappedCredentialAuthenticator<P> implements Authenticator<BasicCredentials, P> {
+
+  private final MappedCredentialStore store;
+  private final PasswordVerifier      verifier;
+  private final Function<String, P>   principalFactory;
+
+  /**
+   * @param store            the credential store
+   * @param verifier         the password verifier
+   * @param principalFactory builds the principal for an authenticated username
+   */
+  public MappedCredentialAuthenticator(MappedCredentialStore store, PasswordVerifier verifier, Function<String, P> principalFactory) {
+    this.store            = Preconditions.checkNotNull(store, "Credential store is not set");
+    this.verifier         = Preconditions.checkNotNull(verifier, "Password verifier is not set");
+    this.principalFactory = Preconditions.checkNotNull(principalFactory, "Principal factory is not set");
+  }
+
+  @Override
+  public Optional<P> authenticate(BasicCredentials credentials) throws AuthenticationException {
+    String passwordHash = store.getPasswordHash(credentials.getUsername());
+
+    if (passwordHash == null) {
+      verifier.rejectUnknownUser();
+      return Optional.empty();
+    }
+
+    if (verifier.verify(credentials.getUsername(), credentials.getPassword(), passwordHash)) {
+      return Optional.of(principalFactory.apply(credentials.getUsername()));
+    }
+
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,327 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * A read-only username to password hash table, memory-mapped from a file and reloaded when the
+ * file changes.
+ *
+ * The file is an open-addressed hash table: a header, a power-of-two array of 8-byte slots
+ * (the username's 32-bit hash and the offset of its record), and the records themselves, each a
+ * length-prefixed UTF-8 username and password hash.  Lookups probe the mapped slots directly, so
+ * the table's size has no effect on the heap, and only a hit allocates the returned hash.
+ *
+ * A reload maps the new file and swaps it in with a single volatile write; lookups never lock,
+ * and those already under way finish against the old mapping.  Replace the file with an atomic
+ * rename, as {@link #write(Path, Map)} does, rather than rewriting it in place, since rewriting
+ * would change the old mapping under readers.  Files are limited to 2GB.
+ *
+ * Every slot's record is bounds-checked against the data region when a file is mapped, so a
+ * truncated or corrupt file fails to load rather than failing lookups.
+ */
+public class MappedCredentialStore implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MappedCredentialStore.class);
+
+  private static final int MAGIC       = 0x53414353; // "SACS"
+  private static final int VERSION     = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int SLOT_SIZE   = 8;
+
+  private final LongAdder reloads = new LongAdder();
+
+  private final Path                     path;
+  private final long                     pollIntervalMillis;
+  private final ScheduledExecutorService scheduler;
+
+  private volatile Table table;
+
+  /**
+   * @param path         the credential file
+   * @param pollInterval how often to check the file for changes, once started
+   * @param unit         the unit of {@code pollInterval}
+   * @throws IOException if the file can't be read or isn't a credential file
+   */
+  public MappedCredentialStore(Path path, long pollInterval, TimeUnit unit) throws IOException {
+    Preconditions.checkArgument(pollInterval > 0, "Poll interval must be positive");
+
+    this.path               = path;
+    this.pollIntervalMillis = unit.toMillis(pollInterval);
+    this.table              = Table.open(path);
+    this.scheduler          = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "credential-store-reloader");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param username a username
+   * @return the username's encoded password hash, or {@code null} if there is no such user
+   */
+  public String getPasswordHash(String username) {
+    return table.get(username.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return the number of users in the current file
+   */
+  public int size() {
+    return table.entries;
+  }
+
+  /**
+   * @return the number of times a changed file has been swapped in
+   */
+  public long getReloadCount() {
+    return reloads.sum();
+  }
+
+  /**
+   * Reloads the file if it has changed since it was last mapped.  A file which fails to load is
+   * logged and the current one is kept.
+   *
+   * @return {@code true} if a new file was swapped in
+   */
+  public boolean reload() {
+    try {
+      if (!table.isStale(Files.readAttributes(path, BasicFileAttributes.class))) {
+        return false;
+      }
+
+      this.table = Table.open(path);
+      reloads.increment();
+
+      LOGGER.info("Reloaded {} credentials from {}", table.entries, path);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Failed to reload credentials from {}", path, e);
+      return false;
+    }
+  }
+
+  @Override
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::reload, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Writes a credential file, replacing any existing one with an atomic rename.
+   *
+   * @param path        the credential file
+   * @param credentials usernames and their encoded password hashes
+   * @throws IOException if the file can't be written
+   */
+  public static void write(Path path, Map<String, String> credentials) throws IOException {
+    int    slots = Math.max(2, Integer.highestOneBit(Math.max(1, credentials.size() * 2 - 1)) << 1);
+    long[] table = new long[slots];
+    Path   tmp   = path.resolveSibling(path.getFileName() + ".tmp");
+
+    ByteBuffer records = ByteBuffer.allocate(1024);
+
+    for (Map.Entry<String, String> credential : credentials.entrySet()) {
+      byte[] username = credential.getKey().getBytes(StandardCharsets.UTF_8);
+      byte[] hash     = credential.getValue().getBytes(StandardCharsets.UTF_8);
+
+      Preconditions.checkArgument(username.length <= 0xffff && hash.length <= 0xffff, "Credential too long");
+
+      int hashCode = hash(username, 0, username.length);
+      int slot     = hashCode & (slots - 1);
+
+      while (table[slot] != 0) slot = (slot + 1) & (slots - 1);
+
+      if (records.remaining() < 4 + username.length + hash.length) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(records.capacity() * 2, records.position() + 4 + username.length + hash.length));
+        records.flip();
+        records = grown.put(records);
+      }
+
+      table[slot] = ((long) hashCode << 32) | (records.position() + 1L);
+
+      records.putShort((short) username.length).put(username);
+      records.putShort((short) hash.length).put(hash);
+    }
+
+    Preconditions.checkArgument(HEADER_SIZE + (long) slots * SLOT_SIZE + records.position() <= Integer.MAX_VALUE, "Credential file too large");
+
+    try (OutputStream     file   = Files.newOutputStream(tmp);
+         DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file)))
+    {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(slots);
+      output.writeInt(credentials.size());
+
+      for (long slot : table) output.writeLong(slot);
+
+      output.write(records.array(), 0, records.position());
+    }
+
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int hash = 0x811c9dc5;
+
+    for (int i=offset;i<offset+length;i++) {
+      hash = (hash ^ (bytes[i] & 0xff)) * 0x01000193;
+    }
+
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+
+  private static class Table {
+    private final MappedByteBuffer    buffer;
+    private final int                 mask;
+    private final int                 entries;
+    private final int                 dataOffset;
+    private final BasicFileAttributes attributes;
+
+    private Table(MappedByteBuffer buffer, int slots, int entries, BasicFileAttributes attributes) {
+      this.buffer     = buffer;
+      this.mask       = slots - 1;
+      this.entries    = entries;
+      this.dataOffset = HEADER_SIZE + slots * SLOT_SIZE;
+      this.attributes = attributes;
+    }
+
+    boolean isStale(BasicFileAttributes current) {
+      return !Objects.equals(current.fileKey(), attributes.fileKey())          ||
+             !current.lastModifiedTime().equals(attributes.lastModifiedTime()) ||
+             current.size() != attributes.size();
+    }
+
+    static Table open(Path path) throws IOException {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long size = channel.size();
+
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+          throw new IOException("Bad credential file size: " + size);
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        int magic   = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        int slots   = buffer.getInt(8);
+        int entries = buffer.getInt(12);
+
+        if (magic != MAGIC || version != VERSION) {
+          throw new IOException("Not a credential file: " + path);
+        }
+
+        if (slots < 2 || Integer.bitCount(slots) != 1 || entries < 0 || entries >= slots ||
+            HEADER_SIZE + (long) slots * SLOT_SIZE > size)
+        {
+          throw new IOException("Corrupt credential file header: " + path);
+        }
+
+        Table table = new Table(buffer, slots, entries, attributes);
+
+        if (!table.isValid((int) size)) {
+          throw new IOException("Corrupt credential file records: " + path);
+        }
+
+        return table;
+      }
+    }
+
+    private boolean isValid(int size) {
+      int used = 0;
+
+      for (int slot=0;slot<=mask;slot++) {
+        int offset = (int) buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+
+        if (offset == 0) continue;
+
+        long record = dataOffset + (offset & 0xffffffffL) - 1;
+
+        if (record + 2 > size) return false;
+
+        long hashOffset = record + 2 + (buffer.getShort((int) record) & 0xffff);
+
+        if (hashOffset + 2 > size) return false;
+        if (hashOffset + 2 + (buffer.getShort((int) hashOffset) & 0xffff) > size) return false;
+
+        used++;
+      }
+
+      return used == entries;
+    }
+
+    String get(byte[] username) {
+      int hashCode = hash(username, 0, username.length);
+
+      for (int probe = 0, slot = hashCode & mask;probe <= mask;probe++, slot = (slot + 1) & mask) {
+        long entry  = buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+        int  offset = (int) entry;
+
+        if (offset == 0) {
+          return null;
+        }
+
+        if ((int) (entry >>> 32) == hashCode) {
+          int record = dataOffset + offset - 1;
+
+          if (matches(record, username)) {
+            int    hashOffset = record + 2 + username.length;
+            int    hashLength = buffer.getShort(hashOffset) & 0xffff;
+            byte[] hash       = new byte[hashLength];
+
+            for (int i=0;i<hashLength;i++) hash[i] = buffer.get(hashOffset + 2 + i);
+
+            return new String(hash, StandardCharsets.UTF_8);
+          }
+        }
+      }
+
+      return null;
+    }
+
+    private boolean matches(int record, byte[] username) {
+      if ((buffer.getShort(record) & 0xffff) != username.length) {
+        return false;
+      }
+
+      for (int i=0;i<username.length;i++) {
+        if (buffer.get(record + 2 + i) != username[i]) return false;
+      }
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * An interface for password hashing algorithms used by a {@link PasswordVerifier}.
+ *
+ * Encoded hashes carry their own algorithm identifier, salt and cost parameters, so that a
+ * hasher can verify passwords hashed under older, weaker settings and report that they
+ * should be upgraded.
+ */
+public interface PasswordHasher {
+  /**
+   * @param encodedHash a stored password hash
+   * @return {@code true} if the hash is in this hasher's format
+   */
+  boolean supports(String encodedHash);
+
+  /**
+   * @param password a plaintext password
+   * @return the encoded hash of the password, with a fresh salt and this hasher's parameters
+   */
+  String hash(String password);
+
+  /**
+   * @param password    a plaintext password
+   * @param encodedHash a stored password hash in this hasher's format
+   * @return {@code true} if the password matches the hash
+   */
+  boolean verify(String password, String encodedHash);
+
+  /**
+   * @param encodedHash a stored password hash in this hasher's format
+   * @return {@code true} if the hash was made with weaker parameters than this hasher's
+   */
+  boolean needsRehash(String encodedHash);
+}
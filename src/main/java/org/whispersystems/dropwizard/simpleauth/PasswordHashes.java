@@ -0,0 +1,54 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Shared encoding helpers for {@code $id$params$salt$hash} style password hashes.
+ */
+final class PasswordHashes {
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private PasswordHashes() {}
+
+  static byte[] salt(int length) {
+    byte[] salt = new byte[length];
+    RANDOM.nextBytes(salt);
+    return salt;
+  }
+
+  static String encode(byte[] bytes) {
+    return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  static byte[] decode(String encoded) {
+    return Base64.getDecoder().decode(encoded);
+  }
+
+  static boolean constantTimeEquals(byte[] a, byte[] b) {
+    return MessageDigest.isEqual(a, b);
+  }
+
+  /**
+   * Reads an integer parameter from a {@code name=value,name=value} list.
+   *
+   * @return the parameter's value, or -1 if it is missing or not a number
+   */
+  static int parameter(String parameters, String name) {
+    for (String parameter : parameters.split(",")) {
+      int equals = parameter.indexOf('=');
+
+      if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+        try {
+          return Integer.parseInt(parameter.substring(equals + 1));
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+    }
+
+    return -1;
+  }
+}
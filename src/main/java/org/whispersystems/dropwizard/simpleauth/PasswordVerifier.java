@@ -0,0 +1,356 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * Verifies passwords against stored hashes on a bounded pool of hashing threads, for use from
+ * inside an {@link Authenticator}.
+ *
+ * Memory-hard hashes cost tens of milliseconds of CPU each, so they run on a fixed number of
+ * threads with a bounded queue rather than on request threads.  When the queue is full,
+ * verification fails fast with an {@link AuthenticationException} instead of piling up work.
+ *
+ * Lookups for unknown users should call {@link #rejectUnknownUser()}, which waits for about as
+ * long as a real verification takes without spending the CPU, so response times don't reveal
+ * which usernames exist.  The time it waits is calibrated with one real hash in {@link #start()},
+ * and then tracks real verifications from submission to completion, so that time spent queued
+ * for a hashing thread under load is matched too.  Rejecting an unknown user before the
+ * verifier is calibrated fails with an {@link IllegalStateException}.
+ *
+ * Stored hashes are matched to a {@link PasswordHasher} by format.  A successful login against a
+ * legacy format, or against weaker parameters than the preferred hasher's, is rehashed in the
+ * background and handed to the {@link RehashListener}.
+ */
+public class PasswordVerifier implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PasswordVerifier.class);
+
+  private final LongAdder verified = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder rehashed = new LongAdder();
+
+  private final PasswordHasher       preferred;
+  private final List<PasswordHasher> hashers;
+  private final ExecutorService      executor;
+  private final long                 timeoutNanos;
+  private final RehashListener       rehashListener;
+  private final AtomicLong           averageNanos;
+  private final boolean              ownsExecutor;
+
+  private PasswordVerifier(PasswordHasher preferred, List<PasswordHasher> hashers, ExecutorService executor,
+                           boolean ownsExecutor, long timeoutNanos, RehashListener rehashListener)
+  {
+    this.preferred      = preferred;
+    this.hashers        = hashers;
+    this.executor       = executor;
+    this.ownsExecutor   = ownsExecutor;
+    this.timeoutNanos   = timeoutNanos;
+    this.rehashListener = rehashListener;
+    this.averageNanos   = new AtomicLong();
+  }
+
+  /**
+   * Checks a password against a stored hash.
+   *
+   * @param username    the user the hash belongs to, passed on to the {@link RehashListener}
+   * @param password    the plaintext password
+   * @param encodedHash the stored hash
+   * @return {@code true} if the password matches
+   * @throws AuthenticationException if the hashing pool is saturated or the check timed out
+   */
+  public boolean verify(String username, String password, String encodedHash) throws AuthenticationException {
+    PasswordHasher hasher = getHasherFor(encodedHash);
+
+    if (hasher == null) {
+      LOGGER.warn("Unrecognized password hash format for {}", username);
+      return rejectUnknownUser();
+    }
+
+    long    submitted = System.nanoTime();
+    boolean valid     = run(() -> {
+      boolean match = hasher.verify(password, encodedHash);
+
+      // Includes the time spent queued, which rejectUnknownUser() has to match as well
+      record(System.nanoTime() - submitted);
+      return match;
+    });
+
+    verified.increment();
+
+    if (valid && rehashListener != null && (hasher != preferred || preferred.needsRehash(encodedHash))) {
+      rehash(username, password);
+    }
+
+    return valid;
+  }
+
+  /**
+   * Hashes a password with the preferred hasher.
+   *
+   * @param password the plaintext password
+   * @return the encoded hash
+   * @throws AuthenticationException if the hashing pool is saturated or hashing timed out
+   */
+  public String hash(String password) throws AuthenticationException {
+    return run(() -> preferred.hash(password));
+  }
+
+  /**
+   * Waits for about as long as a password verification takes, without hashing anything.
+   *
+   * @return {@code false}, always
+   * @throws IllegalStateException if the verifier hasn't been started or verified a password yet
+   */
+  public boolean rejectUnknownUser() {
+    long average = averageNanos.get();
+
+    Preconditions.checkState(average != 0, "PasswordVerifier is not calibrated, call start() first");
+
+    LockSupport.parkNanos(average);
+    return false;
+  }
+
+  /**
+   * @return the number of passwords verified
+   */
+  public long getVerifiedCount() {
+    return verified.sum();
+  }
+
+  /**
+   * @return the number of verifications refused because the hashing pool was saturated
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return the number of stored hashes upgraded after a successful login
+   */
+  public long getRehashedCount() {
+    return rehashed.sum();
+  }
+
+  /**
+   * Calibrates {@link #rejectUnknownUser()} with one real hash, unless real verifications
+   * already have.
+   */
+  @Override
+  public void start() {
+    averageNanos.compareAndSet(0, calibrate(preferred));
+  }
+
+  /**
+   * Shuts down the built-in hashing pool.  An executor passed to
+   * {@link Builder#setExecutor(ExecutorService)} is left for its owner to shut down.
+   */
+  @Override
+  public void stop() {
+    if (ownsExecutor) executor.shutdown();
+  }
+
+  private PasswordHasher getHasherFor(String encodedHash) {
+    for (PasswordHasher hasher : hashers) {
+      if (hasher.supports(encodedHash)) return hasher;
+    }
+
+    return null;
+  }
+
+  private void rehash(String username, String password) {
+    try {
+      executor.execute(() -> {
+        try {
+          rehashListener.onRehash(username, preferred.hash(password));
+          rehashed.increment();
+        } catch (RuntimeException e) {
+          LOGGER.warn("Rehash failed for {}", username, e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Skipping rehash, hashing pool is saturated");
+    }
+  }
+
+  private <T> T run(Callable<T> task) throws AuthenticationException {
+    Future<T> future;
+
+    try {
+      future = executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      throw new AuthenticationException("Password hashing pool is saturated");
+    }
+
+    try {
+      return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw new AuthenticationException("Timed out waiting for password hashing");
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new AuthenticationException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new AuthenticationException(e.getCause());
+    }
+  }
+
+  private void record(long elapsedNanos) {
+    long current;
+
+    do {
+      current = averageNanos.get();
+    } while (!averageNanos.compareAndSet(current, current == 0 ? elapsedNanos : current + (elapsedNanos - current) / 8));
+  }
+
+  private static long calibrate(PasswordHasher hasher) {
+    String encoded = hasher.hash("calibration");
+    long   start   = System.nanoTime();
+
+    hasher.verify("calibration", encoded);
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Receives upgraded hashes so they can be written back to the credential store.
+   */
+  public interface RehashListener {
+    /**
+     * @param username    the user whose hash was upgraded
+     * @param encodedHash the new hash, made with the preferred hasher
+     */
+    void onRehash(String username, String encodedHash);
+  }
+
+  public static class Builder {
+
+    private final PasswordHasher       preferred;
+    private final List<PasswordHasher> legacy = new ArrayList<>();
+
+    private int             threads     = Runtime.getRuntime().availableProcessors();
+    private int             queueSize   = 64;
+    private long            timeout     = 5;
+    private TimeUnit        timeoutUnit = TimeUnit.SECONDS;
+    private ExecutorService executor;
+    private RehashListener  rehashListener;
+
+    /**
+     * @param preferred the hasher for new hashes
+     */
+    public Builder(PasswordHasher preferred) {
+      this.preferred = Preconditions.checkNotNull(preferred, "Preferred PasswordHasher is not set");
+    }
+
+    /**
+     * @param hasher a hasher for stored hashes in an older format, upgraded on login
+     * @return the current builder
+     */
+    public Builder addLegacyHasher(PasswordHasher hasher) {
+      this.legacy.add(Preconditions.checkNotNull(hasher));
+      return this;
+    }
+
+    /**
+     * @param threads the number of hashing threads
+     * @return the current builder
+     */
+    public Builder setThreads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * @param queueSize the number of verifications which may wait for a hashing thread
+     * @return the current builder
+     */
+    public Builder setQueueSize(int queueSize) {
+      this.queueSize = queueSize;
+      return this;
+    }
+
+    /**
+     * @param executor an executor to hash on, instead of the built-in bounded pool.  It isn't
+     *                 shut down when the verifier stops.
+     * @return the current builder
+     */
+    public Builder setExecutor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * @param timeout how long a caller waits for a verification to finish
+     * @param unit    the unit of {@code timeout}
+     * @return the current builder
+     */
+    public Builder setTimeout(long timeout, TimeUnit unit) {
+      this.timeout     = timeout;
+      this.timeoutUnit = unit;
+      return this;
+    }
+
+    /**
+     * @param rehashListener the listener to hand upgraded hashes to
+     * @return the current builder
+     */
+    public Builder setRehashListener(RehashListener rehashListener) {
+      this.rehashListener = rehashListener;
+      return this;
+    }
+
+    public PasswordVerifier build() {
+      Preconditions.checkArgument(threads > 0, "Threads must be positive");
+      Preconditions.checkArgument(queueSize > 0, "Queue size must be positive");
+      Preconditions.checkArgument(timeout > 0, "Timeout must be positive");
+
+      List<PasswordHasher> hashers = new ArrayList<>();
+      hashers.add(preferred);
+      hashers.addAll(legacy);
+
+      ExecutorService executor = this.executor;
+
+      if (executor == null) {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(queueSize), new HashingThreadFactory());
+      }
+
+      return new PasswordVerifier(preferred, hashers, executor, this.executor == null,
+                                  timeoutUnit.toNanos(timeout), rehashListener);
+    }
+  }
+
+  private static class HashingThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "password-verifier-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
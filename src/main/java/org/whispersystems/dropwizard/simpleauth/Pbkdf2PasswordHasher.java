@@ -0,0 +1,82 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * PBKDF2-HMAC-SHA256 password hashes, encoded as {@code $pbkdf2-sha256$i=N$salt$hash}.
+ * Needs nothing beyond the JDK.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+  private static final String PREFIX      = "$pbkdf2-sha256$";
+  private static final int    SALT_LENGTH = 16;
+  private static final int    KEY_LENGTH  = 32;
+
+  private final int iterations;
+
+  /**
+   * @param iterations the iteration count for new hashes
+   */
+  public Pbkdf2PasswordHasher(int iterations) {
+    Preconditions.checkArgument(iterations > 0, "Iterations must be positive");
+    this.iterations = iterations;
+  }
+
+  @Override
+  public boolean supports(String encodedHash) {
+    return encodedHash.startsWith(PREFIX);
+  }
+
+  @Override
+  public String hash(String password) {
+    byte[] salt = PasswordHashes.salt(SALT_LENGTH);
+    return PREFIX + "i=" + iterations + "$" + PasswordHashes.encode(salt) + "$" +
+           PasswordHashes.encode(derive(password, salt, iterations, KEY_LENGTH));
+  }
+
+  @Override
+  public boolean verify(String password, String encodedHash) {
+    String[] parts = encodedHash.split("\\$");
+
+    if (parts.length != 5) {
+      return false;
+    }
+
+    int iterations = PasswordHashes.parameter(parts[2], "i");
+
+    if (iterations <= 0) {
+      return false;
+    }
+
+    try {
+      byte[] salt     = PasswordHashes.decode(parts[3]);
+      byte[] expected = PasswordHashes.decode(parts[4]);
+
+      return PasswordHashes.constantTimeEquals(derive(password, salt, iterations, expected.length), expected);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean needsRehash(String encodedHash) {
+    String[] parts = encodedHash.split("\\$");
+    return parts.length != 5 || PasswordHashes.parameter(parts[2], "i") < iterations;
+  }
+
+  private static byte[] derive(String password, byte[] salt, int iterations, int length) {
+    PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+
+    try {
+      return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    } finally {
+      spec.clearPassword();
+    }
+  }
+}
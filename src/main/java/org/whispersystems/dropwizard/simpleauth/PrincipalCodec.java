@@ -0,0 +1,22 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * Converts principals to and from bytes, so that they can be persisted by a
+ * {@link WarmStartAuthenticator}.
+ *
+ * @param <P> the type of principals
+ */
+public interface PrincipalCodec<P> {
+
+  /**
+   * @param principal a principal
+   * @return the principal's encoded form
+   */
+  byte[] encode(P principal);
+
+  /**
+   * @param encoded a principal's encoded form
+   * @return the principal
+   */
+  P decode(byte[] encoded);
+}
@@ -0,0 +1,38 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * The verified signature of a request authenticated by a {@link SignedRequestAuthFilter}.
+ */
+public class RequestSignature {
+
+  private final String keyId;
+  private final String nonce;
+  private final long   date;
+
+  public RequestSignature(String keyId, String nonce, long date) {
+    this.keyId = keyId;
+    this.nonce = nonce;
+    this.date  = date;
+  }
+
+  /**
+   * @return the id of the key the request was signed with
+   */
+  public String getKeyId() {
+    return keyId;
+  }
+
+  /**
+   * @return the request's unique nonce
+   */
+  public String getNonce() {
+    return nonce;
+  }
+
+  /**
+   * @return the request's signed {@code Date}, in milliseconds since the epoch
+   */
+  public long getDate() {
+    return date;
+  }
+}
@@ -0,0 +1,100 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Signs requests for a {@link SignedRequestAuthFilter}.  Clients send:
+ *
+ * <ul>
+ *   <li>{@code Date}: the request time, in RFC 1123 format</li>
+ *   <li>{@code X-Content-SHA256}: the base64 SHA-256 digest of the body, empty or not</li>
+ *   <li>{@code Authorization: Signature keyId="...",nonce="...",signature="..."}: a base64
+ *       HMAC-SHA256, under the key, of the method, raw path and query, date, nonce and body
+ *       digest, each on its own line</li>
+ * </ul>
+ */
+public class RequestSigner {
+
+  static final String ALGORITHM      = "HmacSHA256";
+  static final String CONTENT_SHA256 = "X-Content-SHA256";
+
+  private final String        keyId;
+  private final SecretKeySpec key;
+
+  /**
+   * @param keyId the id the server knows the key by
+   * @param key   the shared HMAC key
+   */
+  public RequestSigner(String keyId, byte[] key) {
+    Preconditions.checkArgument(keyId != null && keyId.indexOf('"') < 0, "Invalid key id");
+    Preconditions.checkArgument(key != null && key.length >= 16, "Key must be at least 16 bytes");
+
+    this.keyId = keyId;
+    this.key   = new SecretKeySpec(key, ALGORITHM);
+  }
+
+  /**
+   * @param method       the request method
+   * @param pathAndQuery the raw request path, with its raw query string if any
+   * @param date         the value of the request's {@code Date} header
+   * @param bodyDigest   the value of the request's {@code X-Content-SHA256} header
+   * @return the value of the request's {@code Authorization} header
+   */
+  public String sign(String method, String pathAndQuery, String date, String bodyDigest) {
+    String nonce = UUID.randomUUID().toString();
+
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+
+      String signature = Base64.getEncoder().encodeToString(signature(mac, method, pathAndQuery, date, nonce, bodyDigest));
+      return "Signature keyId=\"" + keyId + "\",nonce=\"" + nonce + "\",signature=\"" + signature + "\"";
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * @return the current time, formatted for a {@code Date} header
+   */
+  public static String date() {
+    return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+  }
+
+  /**
+   * @param body a request body
+   * @return the body's digest, formatted for an {@code X-Content-SHA256} header
+   */
+  public static String bodyDigest(byte[] body) {
+    try {
+      return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static byte[] signature(Mac mac, String method, String pathAndQuery, String date, String nonce, String bodyDigest) {
+    mac.update(method.getBytes(StandardCharsets.UTF_8));
+    mac.update((byte) '\n');
+    mac.update(pathAndQuery.getBytes(StandardCharsets.UTF_8));
+    mac.update((byte) '\n');
+    mac.update(date.getBytes(StandardCharsets.UTF_8));
+    mac.update((byte) '\n');
+    mac.update(nonce.getBytes(StandardCharsets.UTF_8));
+    mac.update((byte) '\n');
+    mac.update(bodyDigest.getBytes(StandardCharsets.UTF_8));
+
+    return mac.doFinal();
+  }
+}
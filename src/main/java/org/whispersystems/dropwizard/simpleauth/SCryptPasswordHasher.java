@@ -0,0 +1,85 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import org.bouncycastle.crypto.generators.SCrypt;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * scrypt password hashes, encoded as {@code $scrypt$ln=L,r=R,p=P$salt$hash} where the CPU/memory
+ * cost is {@code 2^L}.  Requires the optional {@code org.bouncycastle:bcprov-jdk15on} dependency.
+ */
+public class SCryptPasswordHasher implements PasswordHasher {
+
+  private static final String PREFIX      = "$scrypt$";
+  private static final int    SALT_LENGTH = 16;
+  private static final int    KEY_LENGTH  = 32;
+
+  private final int logN;
+  private final int r;
+  private final int p;
+
+  /**
+   * @param logN the log2 CPU/memory cost for new hashes
+   * @param r    the block size for new hashes
+   * @param p    the parallelization factor for new hashes
+   */
+  public SCryptPasswordHasher(int logN, int r, int p) {
+    Preconditions.checkArgument(logN > 0 && logN < 32 && r > 0 && p > 0, "Invalid scrypt parameters");
+    this.logN = logN;
+    this.r    = r;
+    this.p    = p;
+  }
+
+  @Override
+  public boolean supports(String encodedHash) {
+    return encodedHash.startsWith(PREFIX);
+  }
+
+  @Override
+  public String hash(String password) {
+    byte[] salt = PasswordHashes.salt(SALT_LENGTH);
+    return PREFIX + "ln=" + logN + ",r=" + r + ",p=" + p + "$" + PasswordHashes.encode(salt) + "$" +
+           PasswordHashes.encode(derive(password, salt, logN, r, p, KEY_LENGTH));
+  }
+
+  @Override
+  public boolean verify(String password, String encodedHash) {
+    String[] parts = encodedHash.split("\\$");
+
+    if (parts.length != 5) {
+      return false;
+    }
+
+    int logN = PasswordHashes.parameter(parts[2], "ln");
+    int r    = PasswordHashes.parameter(parts[2], "r");
+    int p    = PasswordHashes.parameter(parts[2], "p");
+
+    if (logN <= 0 || logN >= 32 || r <= 0 || p <= 0) {
+      return false;
+    }
+
+    try {
+      byte[] salt     = PasswordHashes.decode(parts[3]);
+      byte[] expected = PasswordHashes.decode(parts[4]);
+
+      return PasswordHashes.constantTimeEquals(derive(password, salt, logN, r, p, expected.length), expected);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean needsRehash(String encodedHash) {
+    String[] parts = encodedHash.split("\\$");
+
+    return parts.length != 5                                   ||
+           PasswordHashes.parameter(parts[2], "ln") < logN     ||
+           PasswordHashes.parameter(parts[2], "r")  < r        ||
+           PasswordHashes.parameter(parts[2], "p")  < p;
+  }
+
+  private static byte[] derive(String password, byte[] salt, int logN, int r, int p, int length) {
+    return SCrypt.generate(password.getBytes(StandardCharsets.UTF_8), salt, 1 << logN, r, p, length);
+  }
+}
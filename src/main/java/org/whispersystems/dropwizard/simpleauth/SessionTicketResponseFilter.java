@@ -0,0 +1,23 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import java.io.IOException;
+
+/**
+ * A {@link ContainerResponseFilter} which returns a session ticket issued by a
+ * {@link BasicCredentialAuthFilter} in the {@value BasicCredentialAuthFilter#TICKET_HEADER}
+ * response header.  Register it once alongside the {@link AuthDynamicFeature}.
+ */
+public class SessionTicketResponseFilter implements ContainerResponseFilter {
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+    Object ticket = requestContext.getProperty(BasicCredentialAuthFilter.TICKET_PROPERTY);
+
+    if (ticket instanceof String) {
+      responseContext.getHeaders().putSingle(BasicCredentialAuthFilter.TICKET_HEADER, ticket);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import io.dropwizard.auth.AuthenticationException;
+
+/**
+ * An {@link AuthFilter} for requests signed with a shared HMAC key, as produced by a
+ * {@link RequestSigner}.
+ *
+ * The method, path, date, nonce and declared body digest are verified before the resource is
+ * reached.  The body itself is checked against its declared digest as the entity stream is
+ * read, without buffering it; a mismatch fails the read with a 401.  Requests whose date is
+ * outside the allowed clock skew, or whose nonce has been seen within that window, are rejected.
+ *
+ * Signing keys are looked up by key id through a resolver and cached.  Unknown key ids are
+ * remembered in a small cache of their own, so requests with made-up key ids neither reach the
+ * resolver every time nor evict real keys.  The authenticator is
+ * only asked to map a verified {@link RequestSignature} to a principal, so no passwords are
+ * hashed on this path.
+ */
+@Priority(Priorities.AUTHENTICATION)
+public class SignedRequestAuthFilter<P> extends AuthFilter<RequestSignature, P> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SignedRequestAuthFilter.class);
+
+  private static final byte[] EMPTY_DIGEST = Base64.getDecoder().decode(RequestSigner.bodyDigest(new byte[0]));
+
+  private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+    try {
+      return Mac.getInstance(RequestSigner.ALGORITHM);
+    } catch (GeneralSecurityException e) {
+      throw new AssertionError(e);
+    }
+  });
+
+  private static final int  MAX_UNKNOWN_KEYS           = 1000;
+  private static final long UNKNOWN_KEY_EXPIRY_MINUTES = 1;
+
+  private final Function<String, byte[]>     keyResolver;
+  private final Cache<String, SecretKeySpec> keys;
+  private final Cache<String, Boolean>       unknownKeys;
+  private final Cache<String, Boolean>       nonces;
+  private final long                         clockSkewMillis;
+
+  private SignedRequestAuthFilter(Function<String, byte[]> keyResolver, Cache<String, SecretKeySpec> keys,
+                                  Cache<String, Boolean> unknownKeys, Cache<String, Boolean> nonces,
+                                  long clockSkewMillis)
+  {
+    this.keyResolver     = keyResolver;
+    this.keys            = keys;
+    this.unknownKeys     = unknownKeys;
+    this.nonces          = nonces;
+    this.clockSkewMillis = clockSkewMillis;
+  }
+
+  @Override
+  protected AuthResult authenticateRequest(final ContainerRequestContext requestContext) throws IOException {
+    String header = requestContext.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+    int    offset = header == null ? -1 : AuthorizationHeaders.credentialsOffset(header, prefix);
+
+    if (offset < 0) {
+      return AuthResult.MISSING_CREDENTIALS;
+    }
+
+    String keyId      = parameter(header, offset, "keyId");
+    String nonce      = parameter(header, offset, "nonce");
+    String signature  = parameter(header, offset, "signature");
+    String date       = requestContext.getHeaders().getFirst(HttpHeaders.DATE);
+    String bodyDigest = requestContext.getHeaders().getFirst(RequestSigner.CONTENT_SHA256);
+
+    if (keyId == null || nonce == null || signature == null || date == null || bodyDigest == null) {
+      LOGGER.warn("Incomplete signature header for {} scheme", prefix);
+      return AuthResult.MALFORMED_CREDENTIALS;
+    }
+
+    long   signedAt;
+    byte[] expectedSignature;
+    byte[] expectedDigest;
+
+    try {
+      signedAt          = ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+      expectedSignature = Base64.getDecoder().decode(signature);
+      expectedDigest    = Base64.getDecoder().decode(bodyDigest);
+    } catch (DateTimeParseException | IllegalArgumentException e) {
+      LOGGER.warn("Malformed signature header for {} scheme", prefix);
+      return AuthResult.MALFORMED_CREDENTIALS;
+    }
+
+    if (Math.abs(System.currentTimeMillis() - signedAt) > clockSkewMillis) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    SecretKeySpec key;
+
+    try {
+      key = getKey(keyId);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Error resolving signing key", e);
+      return AuthResult.ERROR;
+    }
+
+    if (key == null || !MessageDigest.isEqual(sign(key, requestContext, date, nonce, bodyDigest), expectedSignature)) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    if (nonces.asMap().putIfAbsent(keyId + ':' + nonce, Boolean.TRUE) != null) {
+      LOGGER.warn("Replayed signature for {} scheme from key {}", prefix, keyId);
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    if (requestContext.hasEntity()) {
+      requestContext.setEntityStream(new DigestVerifyingInputStream(requestContext.getEntityStream(), expectedDigest, this::unauthorized));
+    } else if (!MessageDigest.isEqual(expectedDigest, EMPTY_DIGEST)) {
+      return AuthResult.INVALID_CREDENTIALS;
+    }
+
+    try {
+      Optional<P> principal = authenticateCredentials(new RequestSignature(keyId, nonce, signedAt));
+
+      if (principal.isPresent()) {
+        setAuthenticatedPrincipal(requestContext, principal.get());
+        return AuthResult.AUTHENTICATED;
+      }
+
+      return AuthResult.INVALID_CREDENTIALS;
+    } catch (AuthenticationException e) {
+      LOGGER.warn("Error authenticating request signature", e);
+      return errorResult(e);
+    }
+  }
+
+  /**
+   * Discards all cached signing keys, for example after rotating one.
+   */
+  public void invalidateKeys() {
+    keys.invalidateAll();
+    unknownKeys.invalidateAll();
+  }
+
+  private SecretKeySpec getKey(String keyId) {
+    SecretKeySpec key = keys.getIfPresent(keyId);
+
+    if (key != null || unknownKeys.getIfPresent(keyId) != null) {
+      return key;
+    }
+
+    byte[] resolved = keyResolver.apply(keyId);
+
+    if (resolved == null) {
+      unknownKeys.put(keyId, Boolean.TRUE);
+      return null;
+    }
+
+    key = new SecretKeySpec(resolved, RequestSigner.ALGORITHM);
+    keys.put(keyId, key);
+
+    return key;
+  }
+
+  private static byte[] sign(SecretKeySpec key, ContainerRequestContext requestContext, String date, String nonce, String bodyDigest) {
+    URI    uri          = requestContext.getUriInfo().getRequestUri();
+    String pathAndQuery = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+    Mac    mac          = MAC.get();
+
+    try {
+      mac.init(key);
+    } catch (InvalidKeyException e) {
+      throw new AssertionError(e);
+    }
+
+    return RequestSigner.signature(mac, requestContext.getMethod(), pathAndQuery, date, nonce, bodyDigest);
+  }
+
+  private static String parameter(String header, int offset, String name) {
+    int index = offset;
+
+    while ((index = header.indexOf(name, index)) >= 0) {
+      int  start  = index + name.length();
+      char before = index == offset ? ',' : header.charAt(index - 1);
+
+      if ((before == ',' || before == ' ') && header.startsWith("=\"", start)) {
+        int end = header.indexOf('"', start + 2);
+        return end < 0 ? null : header.substring(start + 2, end);
+      }
+
+      index = start;
+    }
+
+    return null;
+  }
+
+  public static class Builder<P> extends AuthFilter.AuthFilterBuilder<RequestSignature, P, SignedRequestAuthFilter<P>> {
+
+    private Function<String, byte[]> keyResolver;
+    private CacheBuilderSpec         keyCachePolicy  = CacheBuilderSpec.parse("maximumSize=1000, expireAfterWrite=5m");
+    private long                     clockSkewMillis = TimeUnit.MINUTES.toMillis(5);
+    private long                     maxNonces       = 100000;
+
+    public Builder() {
+      setPrefix("Signature");
+    }
+
+    /**
+     * Sets how signing keys are found
+     *
+     * @param keyResolver maps a key id to its HMAC key, or to {@code null} if there is no such key
+     * @return the current builder
+     */
+    public Builder<P> setKeyResolver(Function<String, byte[]> keyResolver) {
+      this.keyResolver = keyResolver;
+      return this;
+    }
+
+    /**
+     * Sets the policy for cached signing keys.  Only keys which exist are cached under this
+     * policy.  Defaults to {@code maximumSize=1000, expireAfterWrite=5m}.
+     *
+     * @param keyCachePolicy a cache policy
+     * @return the current builder
+     */
+    public Builder<P> setKeyCachePolicy(CacheBuilderSpec keyCachePolicy) {
+      this.keyCachePolicy = keyCachePolicy;
+      return this;
+    }
+
+    /**
+     * Sets how far a request's {@code Date} may be from the server's clock.  Nonces are
+     * remembered for twice this long.  Defaults to 5 minutes.
+     *
+     * @param clockSkew the allowed clock skew
+     * @param unit      the unit of {@code clockSkew}
+     * @return the current builder
+     */
+    public Builder<P> setClockSkew(long clockSkew, TimeUnit unit) {
+      this.clockSkewMillis = unit.toMillis(clockSkew);
+      return this;
+    }
+
+    /**
+     * Sets how many nonces are remembered for replay detection.  Defaults to 100,000; size it
+     * for the request rate over twice the clock skew.
+     *
+     * @param maxNonces the maximum number of nonces
+     * @return the current builder
+     */
+    public Builder<P> setMaxNonces(long maxNonces) {
+      this.maxNonces = maxNonces;
+      return this;
+    }
+
+    @Override
+    protected SignedRequestAuthFilter<P> newInstance() {
+      Preconditions.checkArgument(keyResolver != null, "Key resolver is not set");
+      Preconditions.checkArgument(keyCachePolicy != null, "Key cache policy is not set");
+      Preconditions.checkArgument(clockSkewMillis > 0, "Clock skew must be positive");
+      Preconditions.checkArgument(maxNonces > 0, "Max nonces must be positive");
+
+      Cache<String, SecretKeySpec> keys = CacheBuilder.from(keyCachePolicy).build();
+
+      Cache<String, Boolean> unknownKeys = CacheBuilder.newBuilder()
+                                                       .maximumSize(MAX_UNKNOWN_KEYS)
+                                                       .expireAfterWrite(UNKNOWN_KEY_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                                                       .build();
+
+      Cache<String, Boolean> nonces = CacheBuilder.newBuilder()
+                                                  .maximumSize(maxNonces)
+                                                  .expireAfterWrite(clockSkewMillis * 2, TimeUnit.MILLISECONDS)
+                                                  .build();
+
+      return new SignedRequestAuthFilter<>(keyResolver, keys, unknownKeys, nonces, clockSkewMillis);
+    }
+  }
+}
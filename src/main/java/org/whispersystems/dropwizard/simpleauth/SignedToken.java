@@ -0,0 +1,29 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+/**
+ * The verified claims of a token issued by a {@link TokenSigner}.
+ */
+public class SignedToken {
+
+  private final String subject;
+  private final long   expiresAt;
+
+  public SignedToken(String subject, long expiresAt) {
+    this.subject   = subject;
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * @return the subject the token was issued to
+   */
+  public String getSubject() {
+    return subject;
+  }
+
+  /**
+   * @return when the token expires, in milliseconds since the epoch
+   */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+}
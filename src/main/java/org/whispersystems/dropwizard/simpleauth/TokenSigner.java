@@ -0,0 +1,269 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Preconditions;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Issues and verifies stateless HMAC-SHA256 signed tokens of the form
+ * {@code keyId.base64url(subject).expiresAtSeconds.base64url(mac)}.
+ *
+ * Tokens are always signed with the current key, and verified with whichever configured key
+ * their key id names, so keys can be rotated by adding a new current key while keeping the old
+ * one around until the tokens it signed have expired.
+ *
+ * Verification works directly on the token string and allocates nothing but the subject of a
+ * valid token.
+ *
+ * A signer {@link #forPurpose(String) for a purpose} mixes the purpose into every signature, so
+ * tokens issued for one use, such as session tickets, are never accepted for another, such as
+ * bearer tokens, even when both share keys.
+ */
+public class TokenSigner {
+
+  private static final String ALGORITHM  = "HmacSHA256";
+  private static final int    MAC_LENGTH = 32;
+
+  private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[512]);
+
+  private final String[]           keyIds;
+  private final SecretKeySpec[]    keys;
+  private final int                currentKey;
+  private final ThreadLocal<Mac[]> macs;
+  private final byte[]             purpose;
+
+  /**
+   * @param keyId the id of the signing key, in printable ASCII without dots
+   * @param key   the signing key
+   */
+  public TokenSigner(String keyId, byte[] key) {
+    this(keyId, Collections.singletonMap(keyId, key));
+  }
+
+  /**
+   * @param currentKeyId the id of the key new tokens are signed with
+   * @param keys         every key tokens may be verified with, by ids in printable ASCII
+   *                     without dots
+   */
+  public TokenSigner(String currentKeyId, Map<String, byte[]> keys) {
+    Preconditions.checkArgument(keys.containsKey(currentKeyId), "Current key is not set");
+
+    this.keyIds = new String[keys.size()];
+    this.keys   = new SecretKeySpec[keys.size()];
+
+    int index   = 0;
+    int current = -1;
+
+    for (Map.Entry<String, byte[]> entry : keys.entrySet()) {
+      Preconditions.checkArgument(isValidKeyId(entry.getKey()), "Invalid key id: %s", entry.getKey());
+      Preconditions.checkArgument(entry.getValue() != null && entry.getValue().length >= 16, "Key is too short: %s", entry.getKey());
+
+      if (entry.getKey().equals(currentKeyId)) current = index;
+
+      this.keyIds[index] = entry.getKey();
+      this.keys[index]   = new SecretKeySpec(entry.getValue(), ALGORITHM);
+      index++;
+    }
+
+    this.currentKey = current;
+    this.macs       = ThreadLocal.withInitial(() -> new Mac[this.keys.length]);
+    this.purpose    = null;
+  }
+
+  private TokenSigner(TokenSigner signer, byte[] purpose) {
+    this.keyIds     = signer.keyIds;
+    this.keys       = signer.keys;
+    this.currentKey = signer.currentKey;
+    this.macs       = signer.macs;
+    this.purpose    = purpose;
+  }
+
+  /**
+   * @param purpose what the derived signer's tokens are for, in printable ASCII
+   * @return a signer with the same keys whose tokens are only valid for {@code purpose}
+   */
+  public TokenSigner forPurpose(String purpose) {
+    Preconditions.checkArgument(this.purpose == null, "Signer already has a purpose");
+    Preconditions.checkArgument(!purpose.isEmpty() && CharMatcher.inRange(' ', '~').matchesAllOf(purpose), "Invalid purpose: %s", purpose);
+
+    byte[] encoded = new byte[purpose.length() + 1];
+    System.arraycopy(purpose.getBytes(StandardCharsets.US_ASCII), 0, encoded, 0, purpose.length());
+
+    // Never part of a payload, which is ASCII, so no purpose's input is a prefix of another's
+    encoded[purpose.length()] = (byte) 0xff;
+
+    return new TokenSigner(this, encoded);
+  }
+
+  /**
+   * @param subject   the subject of the token
+   * @param expiresAt when the token expires, in milliseconds since the epoch
+   * @return a signed token
+   */
+  public String sign(String subject, long expiresAt) {
+    String payload = keyIds[currentKey] + "." +
+                     Base64.getUrlEncoder().withoutPadding().encodeToString(subject.getBytes(StandardCharsets.UTF_8)) + "." +
+                     (expiresAt / 1000);
+
+    Mac mac = getMac(currentKey);
+    if (purpose != null) mac.update(purpose);
+
+    byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+
+    return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+  }
+
+  /**
+   * @param token a token
+   * @return the token's claims, or {@code null} if the token is malformed, forged or expired
+   */
+  public SignedToken verify(String token) {
+    return verify(token, 0, token.length(), System.currentTimeMillis());
+  }
+
+  /**
+   * Verifies the token in {@code source[start..end)}.
+   *
+   * @param now the current time, in milliseconds since the epoch
+   * @return the token's claims, or {@code null} if the token is malformed, forged or expired
+   */
+  public SignedToken verify(String source, int start, int end, long now) {
+    int first  = indexOf(source, '.', start, end);
+    int second = indexOf(source, '.', first + 1, end);
+    int third  = indexOf(source, '.', second + 1, end);
+
+    if (first <= start || second < 0 || third < 0 || indexOf(source, '.', third + 1, end) != -1) {
+      return null;
+    }
+
+    int keyIndex = keyIndex(source, start, first);
+
+    if (keyIndex < 0) {
+      return null;
+    }
+
+    long expiresAt = parseSeconds(source, second + 1, third);
+
+    if (expiresAt < 0 || expiresAt * 1000 <= now) {
+      return null;
+    }
+
+    int    payloadLength = third - start;
+    byte[] buffer        = buffer(payloadLength + MAC_LENGTH + Base64Url.maxDecodedLength(end - third - 1));
+
+    for (int i=start;i<third;i++) {
+      char c = source.charAt(i);
+      if (c > 127) return null;
+      buffer[i - start] = (byte) c;
+    }
+
+    try {
+      Mac mac = getMac(keyIndex);
+      if (purpose != null) mac.update(purpose);
+      mac.update(buffer, 0, payloadLength);
+      mac.doFinal(buffer, payloadLength);
+    } catch (ShortBufferException e) {
+      throw new AssertionError(e);
+    }
+
+    int presented = Base64Url.decode(source, third + 1, end, buffer, payloadLength + MAC_LENGTH);
+
+    if (presented != MAC_LENGTH) {
+      return null;
+    }
+
+    int difference = 0;
+
+    for (int i=0;i<MAC_LENGTH;i++) {
+      difference |= buffer[payloadLength + i] ^ buffer[payloadLength + MAC_LENGTH + i];
+    }
+
+    if (difference != 0) {
+      return null;
+    }
+
+    int subjectLength = Base64Url.decode(source, first + 1, second, buffer, 0);
+
+    if (subjectLength < 0) {
+      return null;
+    }
+
+    return new SignedToken(new String(buffer, 0, subjectLength, StandardCharsets.UTF_8), expiresAt * 1000);
+  }
+
+  // Tokens are signed as US-ASCII, and verification rejects anything else
+  private static boolean isValidKeyId(String keyId) {
+    return !keyId.isEmpty() && keyId.indexOf('.') == -1 && CharMatcher.inRange(' ', '~').matchesAllOf(keyId);
+  }
+
+  private int keyIndex(String source, int start, int end) {
+    for (int i=0;i<keyIds.length;i++) {
+      if (keyIds[i].length() == end - start && source.regionMatches(start, keyIds[i], 0, end - start)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private Mac getMac(int index) {
+    Mac[] cached = macs.get();
+
+    if (cached[index] == null) {
+      try {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(keys[index]);
+        cached[index] = mac;
+      } catch (GeneralSecurityException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    return cached[index];
+  }
+
+  private static byte[] buffer(int length) {
+    byte[] buffer = BUFFER.get();
+
+    if (buffer.length < length) {
+      buffer = new byte[length];
+      if (length <= 4096) BUFFER.set(buffer);
+    }
+
+    return buffer;
+  }
+
+  private static int indexOf(String source, char c, int start, int end) {
+    if (start < 0) return -1;
+
+    for (int i=start;i<end;i++) {
+      if (source.charAt(i) == c) return i;
+    }
+
+    return -1;
+  }
+
+  private static long parseSeconds(String source, int start, int end) {
+    if (start >= end || end - start > 12) {
+      return -1;
+    }
+
+    long value = 0;
+
+    for (int i=start;i<end;i++) {
+      char c = source.charAt(i);
+      if (c < '0' || c > '9') return -1;
+      value = value * 10 + (c - '0');
+    }
+
+    return value;
+  }
+}
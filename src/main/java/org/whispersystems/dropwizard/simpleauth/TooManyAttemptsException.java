@@ -0,0 +1,37 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+/**
+ * The 429 thrown by an {@link AuthFilter} when a client is blocked by its
+ * {@link AuthRateLimiter}.  Like {@link UnauthorizedException}, no stack trace is captured.
+ */
+public class TooManyAttemptsException extends WebApplicationException {
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  /**
+   * @param retryAfterSeconds the value of the {@code Retry-After} header, or a negative value
+   *                          to leave it out
+   */
+  public TooManyAttemptsException(long retryAfterSeconds) {
+    super(buildResponse(retryAfterSeconds));
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+
+  private static Response buildResponse(long retryAfterSeconds) {
+    Response.ResponseBuilder response = Response.status(TOO_MANY_REQUESTS);
+
+    if (retryAfterSeconds >= 0) {
+      response.header(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+    }
+
+    return response.build();
+  }
+}
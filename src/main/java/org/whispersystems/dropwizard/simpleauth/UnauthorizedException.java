@@ -0,0 +1,23 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * The 401 thrown by an {@link AuthFilter} for a required {@code @Auth} parameter.
+ *
+ * Rejections are routine rather than exceptional, so no stack trace is captured.  The response
+ * itself is built per request: Jersey shares a response's headers with the outgoing message,
+ * and response filters are free to modify them.
+ */
+public class UnauthorizedException extends WebApplicationException {
+
+  public UnauthorizedException(Response response) {
+    super(response);
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,573 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.UnsignedBytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ * A caching {@link Authenticator} decorator whose successful authentications survive a restart,
+ * so that a freshly deployed node doesn't send every client's first request to the backend.
+ *
+ * Successful authentications are cached for a fixed time to live, and periodically and on
+ * {@link #stop()} written to a snapshot file with their expiry times.  On {@link #start()} the
+ * previous snapshot is memory-mapped rather than read: lookups which miss the live cache binary
+ * search the mapped index, decode only the principal they hit, and copy it into the live cache
+ * with its original expiry.  Expired entries are ignored, and the snapshot is released once all
+ * of them have expired.  A snapshot whose index doesn't fit the file, or whose principals don't
+ * decode, is dropped and lookups fall through to the underlying authenticator.
+ *
+ * The file holds a 32-byte key per entry, which should be a salted digest of the credentials
+ * such as {@link #digestedKeys(byte[])} produces, never the credentials themselves.  Principals
+ * are stored as their {@link PrincipalCodec} encodes them, so the file should be readable only
+ * by the service: where the file system supports POSIX permissions it is created readable and
+ * writable by its owner only.  Files are limited to 2GB.
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+public class WarmStartAuthenticator<C, P> implements Authenticator<C, P>, Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WarmStartAuthenticator.class);
+
+  private static final int MAGIC       = 0x53415753; // "SAWS"
+  private static final int VERSION     = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int KEY_LENGTH  = 32;
+  private static final int INDEX_SIZE  = KEY_LENGTH + 16;
+
+  private final LongAdder warmHits   = new LongAdder();
+  private final LongAdder warmMisses = new LongAdder();
+  private final LongAdder snapshots  = new LongAdder();
+
+  private final AtomicLong generation = new AtomicLong();
+
+  private final Authenticator<C, P>                         underlying;
+  private final Function<? super C, byte[]>                 keyFunction;
+  private final PrincipalCodec<P>                           codec;
+  private final Path                                        path;
+  private final long                                        timeToLiveMillis;
+  private final long                                        snapshotIntervalMillis;
+  private final Cache<CredentialsDigester.Digest, Entry<P>> live;
+  private final ScheduledExecutorService                    scheduler;
+
+  private volatile Snapshot snapshot;
+  private volatile long     hydrationNanos;
+
+  private WarmStartAuthenticator(Authenticator<C, P> underlying, Function<? super C, byte[]> keyFunction, PrincipalCodec<P> codec,
+                                 Path path, long timeToLiveMillis, long snapshotIntervalMillis, long maximumSize)
+  {
+    this.underlying             = underlying;
+    this.keyFunction            = keyFunction;
+    this.codec                  = codec;
+    this.path                   = path;
+    this.timeToLiveMillis       = timeToLiveMillis;
+    this.snapshotIntervalMillis = snapshotIntervalMillis;
+    this.live                   = CacheBuilder.newBuilder()
+                                              .maximumSize(maximumSize)
+                                              .expireAfterWrite(timeToLiveMillis, TimeUnit.MILLISECONDS)
+                                              .build();
+    this.scheduler              = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "warm-start-snapshotter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public Optional<P> authenticate(C credentials) throws AuthenticationException {
+    CredentialsDigester.Digest key     = key(credentials);
+    long                       now     = System.currentTimeMillis();
+    long                       started = generation.get();
+    Entry<P>                   cached  = live.getIfPresent(key);
+
+    if (cached != null && cached.expiresAt > now) {
+      return Optional.of(cached.principal);
+    }
+
+    Snapshot current = snapshot;
+
+    if (current != null && current.latestExpiry <= now) {
+      release(current);
+      current = null;
+    }
+
+    if (current != null) {
+      int index = current.find(key.getBytes());
+
+      if (index >= 0 && current.expiresAt(index) > now) {
+        try {
+          P principal = codec.decode(current.principal(index));
+
+          cache(key, new Entry<>(principal, current.expiresAt(index)), started);
+          warmHits.increment();
+
+          return Optional.of(principal);
+        } catch (RuntimeException e) {
+          LOGGER.warn("Failed to decode authentication snapshot {}, dropping it", path, e);
+          release(current);
+        }
+      }
+
+      warmMisses.increment();
+    }
+
+    Optional<P> principal = underlying.authenticate(credentials);
+
+    if (principal.isPresent()) {
+      cache(key, new Entry<>(principal.get(), now + timeToLiveMillis), started);
+    }
+
+    return principal;
+  }
+
+  private void cache(CredentialsDigester.Digest key, Entry<P> entry, long started) {
+    live.put(key, entry);
+
+    // An invalidateAll() since the lookup started may have cleared the cache before this put
+    if (generation.get() != started) {
+      live.invalidate(key);
+    }
+  }
+
+  /**
+   * Discards all cached authentications, including the mapped snapshot and the snapshot file,
+   * for example after a password change.
+   */
+  public synchronized void invalidateAll() {
+    generation.incrementAndGet();
+    live.invalidateAll();
+    snapshot = null;
+
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to delete authentication snapshot {}", path, e);
+    }
+  }
+
+  /**
+   * Writes every unexpired authentication, from the live cache and the mapped snapshot, to the
+   * snapshot file, replacing it with an atomic rename.
+   *
+   * @return the number of authentications written
+   * @throws IOException if the file can't be written
+   */
+  public synchronized int snapshot() throws IOException {
+    long                now      = System.currentTimeMillis();
+    List<SnapshotEntry> entries  = new ArrayList<>();
+    Snapshot            previous = snapshot;
+
+    for (Map.Entry<CredentialsDigester.Digest, Entry<P>> entry : live.asMap().entrySet()) {
+      if (entry.getValue().expiresAt > now) {
+        entries.add(new SnapshotEntry(entry.getKey().getBytes(), entry.getValue().expiresAt, codec.encode(entry.getValue().principal)));
+      }
+    }
+
+    if (previous != null) {
+      for (int i=0;i<previous.entries;i++) {
+        byte[] key = previous.key(i);
+
+        if (previous.expiresAt(i) > now && live.getIfPresent(new CredentialsDigester.Digest(key)) == null) {
+          entries.add(new SnapshotEntry(key, previous.expiresAt(i), previous.principal(i)));
+        }
+      }
+    }
+
+    write(path, entries);
+    snapshots.increment();
+
+    return entries.size();
+  }
+
+  /**
+   * @return the number of lookups served from the mapped snapshot
+   */
+  public long getWarmHitCount() {
+    return warmHits.sum();
+  }
+
+  /**
+   * @return the number of lookups which missed both the live cache and the mapped snapshot
+   */
+  public long getWarmMissCount() {
+    return warmMisses.sum();
+  }
+
+  /**
+   * @return the fraction of live cache misses served from the mapped snapshot
+   */
+  public double getWarmHitRatio() {
+    long hits  = warmHits.sum();
+    long total = hits + warmMisses.sum();
+
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * @param unit the unit to return the time in
+   * @return how long mapping the snapshot took on {@link #start()}
+   */
+  public long getHydrationTime(TimeUnit unit) {
+    return unit.convert(hydrationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the number of authentications in the mapped snapshot, or zero if none is mapped
+   */
+  public int getSnapshotSize() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.entries;
+  }
+
+  /**
+   * @return the number of snapshots written since construction
+   */
+  public long getSnapshotCount() {
+    return snapshots.sum();
+  }
+
+  /**
+   * Maps the previous snapshot, if there is one, and starts writing snapshots periodically.  A
+   * snapshot which can't be mapped is logged and ignored.
+   */
+  @Override
+  public void start() {
+    long start = System.nanoTime();
+
+    try {
+      this.snapshot = Snapshot.open(path);
+      LOGGER.info("Mapped {} authentications from {}", snapshot.entries, path);
+    } catch (NoSuchFileException e) {
+      LOGGER.info("No authentication snapshot at {}", path);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Failed to map authentication snapshot {}", path, e);
+    }
+
+    this.hydrationNanos = System.nanoTime() - start;
+
+    scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the periodic snapshots and writes a final one.
+   */
+  @Override
+  public void stop() {
+    scheduler.shutdownNow();
+    snapshotQuietly();
+  }
+
+  /**
+   * Keys Basic credentials by a salted SHA-256 digest.  The salt must stay the same across
+   * restarts for the snapshot to be usable, and should be kept as secret as the snapshot file.
+   *
+   * @param salt the salt
+   * @return a key function for Basic credentials
+   */
+  public static Function<BasicCredentials, byte[]> digestedKeys(byte[] salt) {
+    CredentialsDigester digester = new CredentialsDigester(salt);
+    return credentials -> digester.digest(credentials).getBytes();
+  }
+
+  private CredentialsDigester.Digest key(C credentials) {
+    byte[] key = keyFunction.apply(credentials);
+
+    Preconditions.checkState(key != null && key.length == KEY_LENGTH, "Keys must be %s bytes", KEY_LENGTH);
+
+    return new CredentialsDigester.Digest(key);
+  }
+
+  private void release(Snapshot current) {
+    if (snapshot == current) snapshot = null;
+  }
+
+  private void snapshotQuietly() {
+    try {
+      int written = snapshot();
+      LOGGER.debug("Wrote {} authentications to {}", written, path);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Failed to write authentication snapshot {}", path, e);
+    }
+  }
+
+  private static void write(Path path, List<SnapshotEntry> entries) throws IOException {
+    Comparator<byte[]> order = UnsignedBytes.lexicographicalComparator();
+    entries.sort((a, b) -> order.compare(a.key, b.key));
+
+    long size = HEADER_SIZE + (long) entries.size() * INDEX_SIZE;
+    for (SnapshotEntry entry : entries) size += entry.principal.length;
+
+    Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Snapshot too large");
+
+    Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName() + ".", ".tmp", ownerOnly(path));
+
+    try (OutputStream     file   = Files.newOutputStream(tmp);
+         DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file)))
+    {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(entries.size());
+      output.writeInt(0);
+
+      int offset = 0;
+
+      for (SnapshotEntry entry : entries) {
+        output.write(entry.key);
+        output.writeLong(entry.expiresAt);
+        output.writeInt(offset);
+        output.writeInt(entry.principal.length);
+
+        offset += entry.principal.length;
+      }
+
+      for (SnapshotEntry entry : entries) {
+        output.write(entry.principal);
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tmp);
+      throw e;
+    }
+
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static FileAttribute<?>[] ownerOnly(Path path) {
+    if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return new FileAttribute<?>[0];
+    }
+
+    return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ,
+                                                                                   PosixFilePermission.OWNER_WRITE))};
+  }
+
+  private static class Entry<P> {
+    private final P    principal;
+    private final long expiresAt;
+
+    private Entry(P principal, long expiresAt) {
+      this.principal = principal;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static class SnapshotEntry {
+    private final byte[] key;
+    private final long   expiresAt;
+    private final byte[] principal;
+
+    private SnapshotEntry(byte[] key, long expiresAt, byte[] principal) {
+      this.key       = key;
+      this.expiresAt = expiresAt;
+      this.principal = principal;
+    }
+  }
+
+  private static class Snapshot {
+    private final MappedByteBuffer buffer;
+    private final int              entries;
+    private final int              dataOffset;
+    private final long             latestExpiry;
+
+    private Snapshot(MappedByteBuffer buffer, int entries, long latestExpiry) {
+      this.buffer       = buffer;
+      this.entries      = entries;
+      this.dataOffset   = HEADER_SIZE + entries * INDEX_SIZE;
+      this.latestExpiry = latestExpiry;
+    }
+
+    static Snapshot open(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long size = channel.size();
+
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+          throw new IOException("Bad snapshot size: " + size);
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        int magic   = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        int entries = buffer.getInt(8);
+
+        if (magic != MAGIC || version != VERSION) {
+          throw new IOException("Not an authentication snapshot: " + path);
+        }
+
+        if (entries < 0 || HEADER_SIZE + (long) entries * INDEX_SIZE > size) {
+          throw new IOException("Corrupt authentication snapshot header: " + path);
+        }
+
+        long dataOffset   = HEADER_SIZE + (long) entries * INDEX_SIZE;
+        long latestExpiry = Long.MIN_VALUE;
+
+        for (int i=0;i<entries;i++) {
+          int  entry     = HEADER_SIZE + i * INDEX_SIZE + KEY_LENGTH;
+          long expiresAt = buffer.getLong(entry);
+          int  offset    = buffer.getInt(entry + 8);
+          int  length    = buffer.getInt(entry + 12);
+
+          if (offset < 0 || length < 0 || dataOffset + offset + length > size) {
+            throw new IOException("Corrupt authentication snapshot index: " + path);
+          }
+
+          latestExpiry = Math.max(latestExpiry, expiresAt);
+        }
+
+        return new Snapshot(buffer, entries, latestExpiry);
+      }
+    }
+
+    int find(byte[] key) {
+      int low  = 0;
+      int high = entries - 1;
+
+      while (low <= high) {
+        int middle     = (low + high) >>> 1;
+        int comparison = compare(middle, key);
+
+        if      (comparison < 0) low  = middle + 1;
+        else if (comparison > 0) high = middle - 1;
+        else                     return middle;
+      }
+
+      return -1;
+    }
+
+    byte[] key(int index) {
+      byte[] key = new byte[KEY_LENGTH];
+      for (int i=0;i<KEY_LENGTH;i++) key[i] = buffer.get(HEADER_SIZE + index * INDEX_SIZE + i);
+      return key;
+    }
+
+    long expiresAt(int index) {
+      return buffer.getLong(HEADER_SIZE + index * INDEX_SIZE + KEY_LENGTH);
+    }
+
+    byte[] principal(int index) {
+      int    entry  = HEADER_SIZE + index * INDEX_SIZE + KEY_LENGTH + 8;
+      int    offset = dataOffset + buffer.getInt(entry);
+      byte[] result = new byte[buffer.getInt(entry + 4)];
+
+      for (int i=0;i<result.length;i++) result[i] = buffer.get(offset + i);
+
+      return result;
+    }
+
+    private int compare(int index, byte[] key) {
+      int entry = HEADER_SIZE + index * INDEX_SIZE;
+
+      for (int i=0;i<KEY_LENGTH;i++) {
+        int difference = (buffer.get(entry + i) & 0xff) - (key[i] & 0xff);
+        if (difference != 0) return difference;
+      }
+
+      return 0;
+    }
+  }
+
+  public static class Builder<C, P> {
+
+    private final Authenticator<C, P>         underlying;
+    private final Function<? super C, byte[]> keyFunction;
+    private final PrincipalCodec<P>           codec;
+    private final Path                        path;
+
+    private long timeToLive       = 10;
+    private long snapshotInterval = 1;
+    private long maximumSize      = 100000;
+
+    private TimeUnit timeToLiveUnit       = TimeUnit.MINUTES;
+    private TimeUnit snapshotIntervalUnit = TimeUnit.MINUTES;
+
+    /**
+     * @param underlying  the authenticator to cache results from
+     * @param keyFunction maps credentials to a 32-byte key, for example
+     *                    {@link WarmStartAuthenticator#digestedKeys(byte[])}
+     * @param codec       encodes principals for the snapshot
+     * @param path        the snapshot file
+     */
+    public Builder(Authenticator<C, P> underlying, Function<? super C, byte[]> keyFunction, PrincipalCodec<P> codec, Path path) {
+      this.underlying  = Preconditions.checkNotNull(underlying, "Underlying Authenticator is not set");
+      this.keyFunction = Preconditions.checkNotNull(keyFunction, "Key function is not set");
+      this.codec       = Preconditions.checkNotNull(codec, "PrincipalCodec is not set");
+      this.path        = Preconditions.checkNotNull(path, "Snapshot path is not set");
+    }
+
+    /**
+     * @param timeToLive how long a successful authentication is cached, across restarts.
+     *                   Defaults to 10 minutes.
+     * @param unit       the unit of {@code timeToLive}
+     * @return the current builder
+     */
+    public Builder<C, P> setTimeToLive(long timeToLive, TimeUnit unit) {
+      this.timeToLive     = timeToLive;
+      this.timeToLiveUnit = unit;
+      return this;
+    }
+
+    /**
+     * @param snapshotInterval how often to write a snapshot, once started.  Defaults to 1 minute.
+     * @param unit             the unit of {@code snapshotInterval}
+     * @return the current builder
+     */
+    public Builder<C, P> setSnapshotInterval(long snapshotInterval, TimeUnit unit) {
+      this.snapshotInterval     = snapshotInterval;
+      this.snapshotIntervalUnit = unit;
+      return this;
+    }
+
+    /**
+     * @param maximumSize the most authentications to cache in memory.  Defaults to 100000.
+     * @return the current builder
+     */
+    public Builder<C, P> setMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    public WarmStartAuthenticator<C, P> build() {
+      Preconditions.checkArgument(timeToLive > 0, "Time to live must be positive");
+      Preconditions.checkArgument(snapshotInterval > 0, "Snapshot interval must be positive");
+      Preconditions.checkArgument(maximumSize > 0, "Maximum size must be positive");
+
+      return new WarmStartAuthenticator<>(underlying, keyFunction, codec, path,
+                                          timeToLiveUnit.toMillis(timeToLive),
+                                          snapshotIntervalUnit.toMillis(snapshotInterval),
+                                          maximumSize);
+    }
+  }
+}
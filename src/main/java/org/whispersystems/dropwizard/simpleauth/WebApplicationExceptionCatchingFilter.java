@@ -15,6 +15,9 @@ import javax.ws.rs.container.ContainerRequestFilter;
  * A {@link ContainerRequestFilter} decorator which catches any {@link
  * WebApplicationException WebApplicationExceptions} thrown by an
  * underlying {@code ContextRequestFilter}.
+ *
+ * An underlying {@link AuthFilter} is asked for its {@link AuthResult} instead,
+ * so that unauthenticated requests never construct an exception at all.
  */
 @Priority(Priorities.AUTHENTICATION)
 class WebApplicationExceptionCatchingFilter implements ContainerRequestFilter {
@@ -27,6 +30,11 @@ class WebApplicationExceptionCatchingFilter implements ContainerRequestFilter {
 
   @Override
   public void filter(ContainerRequestContext requestContext) throws IOException {
+    if (underlying instanceof AuthFilter) {
+      ((AuthFilter) underlying).authenticate(requestContext);
+      return;
+    }
+
     try {
       underlying.filter(requestContext);
     } catch (WebApplicationException err) {
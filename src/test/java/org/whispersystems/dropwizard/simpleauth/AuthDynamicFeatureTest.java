@@ -8,6 +8,7 @@ import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.FeatureContext;
 
+import java.lang.reflect.Method;
 import java.util.Optional;
 
 import io.dropwizard.auth.Auth;
@@ -68,6 +69,77 @@ public class AuthDynamicFeatureTest {
     assertEquals(((WebApplicationExceptionCatchingFilter)integerOptionalCaptor.getValue()).getUnderlying(), integerPrincipal);
   }
 
+  @Test
+  public void testSubtypePrincipal() throws NoSuchMethodException {
+    AuthFilter stringPrincipal = new BasicCredentialAuthFilter.Builder<String>().setRealm("Hmm")
+                                                                                .setPrincipal(String.class)
+                                                                                .setAuthenticator(new StringAuthenticator())
+                                                                                .buildAuthFilter();
+
+    AuthDynamicFeature dynamicFeature = new AuthDynamicFeature(stringPrincipal);
+    ResourceInfo       resourceInfo   = mock(ResourceInfo.class  );
+    FeatureContext     featureContext = mock(FeatureContext.class);
+
+    when(resourceInfo.getResourceMethod()).thenReturn(MockMethod.class.getDeclaredMethod("charSequenceAuthParam", CharSequence.class));
+
+    dynamicFeature.configure(resourceInfo, featureContext);
+    verify(featureContext).register(eq(stringPrincipal));
+    reset(featureContext);
+
+    when(resourceInfo.getResourceMethod()).thenReturn(MockMethod.class.getDeclaredMethod("optionalStringAuthParam", Optional.of("test").getClass()));
+
+    dynamicFeature.configure(resourceInfo, featureContext);
+    dynamicFeature.configure(resourceInfo, featureContext);
+
+    ArgumentCaptor<ContainerRequestFilter> captor = ArgumentCaptor.forClass(ContainerRequestFilter.class);
+    verify(featureContext, times(2)).register(captor.capture());
+    assertTrue(captor.getAllValues().get(0) == captor.getAllValues().get(1));
+  }
+
+  @Test
+  public void testAmbiguousSupertype() throws NoSuchMethodException {
+    AuthFilter stringPrincipal = new BasicCredentialAuthFilter.Builder<String>().setRealm("Hmm")
+                                                                                .setPrincipal(String.class)
+                                                                                .setAuthenticator(new StringAuthenticator())
+                                                                                .buildAuthFilter();
+
+    AuthFilter builderPrincipal = new BasicCredentialAuthFilter.Builder<StringBuilder>().setRealm("Hmm")
+                                                                                        .setPrincipal(StringBuilder.class)
+                                                                                        .setAuthenticator(credentials -> Optional.empty())
+                                                                                        .buildAuthFilter();
+
+    AuthDynamicFeature dynamicFeature = new AuthDynamicFeature(stringPrincipal, builderPrincipal);
+    ResourceInfo       resourceInfo   = mock(ResourceInfo.class  );
+    FeatureContext     featureContext = mock(FeatureContext.class);
+
+    for (Method method : new Method[] {MockMethod.class.getDeclaredMethod("charSequenceAuthParam", CharSequence.class),
+                                       MockMethod.class.getDeclaredMethod("objectAuthParam", Object.class)})
+    {
+      when(resourceInfo.getResourceMethod()).thenReturn(method);
+
+      try {
+        dynamicFeature.configure(resourceInfo, featureContext);
+        throw new AssertionError("Shouldn't resolve " + method);
+      } catch (IllegalArgumentException e) {
+        // Good
+      }
+    }
+
+    verifyZeroInteractions(featureContext);
+  }
+
+  @Test
+  public void testNoAuthParam() throws NoSuchMethodException {
+    AuthDynamicFeature dynamicFeature = new AuthDynamicFeature(new AuthFilter[0]);
+    ResourceInfo       resourceInfo   = mock(ResourceInfo.class  );
+    FeatureContext     featureContext = mock(FeatureContext.class);
+
+    when(resourceInfo.getResourceMethod()).thenReturn(MockMethod.class.getDeclaredMethod("noAuthParam", String.class));
+
+    dynamicFeature.configure(resourceInfo, featureContext);
+    verifyZeroInteractions(featureContext);
+  }
+
   @Test
   public void testMultipleAuthTags() throws NoSuchMethodException {
     AuthDynamicFeature dynamicFeature = new AuthDynamicFeature(new AuthFilter[0]);
@@ -97,7 +169,10 @@ public class AuthDynamicFeatureTest {
   @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
   private static class MockMethod {
     public void multipleAuthParams(@Auth String foo, @Auth String bar) {}
+    public void noAuthParam(String foo) {}
     public void stringAuthParam(@Auth String foo) {}
+    public void charSequenceAuthParam(@Auth CharSequence foo) {}
+    public void objectAuthParam(@Auth Object foo) {}
     public void integerAuthParam(@Auth Integer bar) {}
     public void optionalStringAuthParam(@Auth Optional<String> foo) {}
     public void optionalIntegerAuthParam(@Auth Optional<Integer> bar) {}
@@ -0,0 +1,68 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Test;
+
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class AuthFilterTest {
+
+  @Test
+  public void testLegacyFilterSubclass() throws IOException {
+    AuthFilter<String, String> authFilter = new HeaderAuthFilter.Builder().setAuthenticator(Optional::of)
+                                                                          .setPrincipal(String.class)
+                                                                          .buildAuthFilter();
+
+    assertEquals(authFilter.authenticate(request("Legacy user")), AuthResult.AUTHENTICATED);
+    assertEquals(authFilter.authenticate(request(null)), AuthResult.INVALID_CREDENTIALS);
+    assertEquals(authFilter.authenticate(request("Legacy error")), AuthResult.ERROR);
+
+    ContainerRequestContext optional = request(null);
+    new WebApplicationExceptionCatchingFilter(authFilter).filter(optional);
+    verify(optional, never()).setSecurityContext(any(SecurityContext.class));
+  }
+
+  private static ContainerRequestContext request(String authorization) {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    if (authorization != null) headers.add(HttpHeaders.AUTHORIZATION, authorization);
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    return containerRequestContext;
+  }
+
+  private static class HeaderAuthFilter extends LegacyAuthFilter<String, String> {
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+      String header = requestContext.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+
+      if (header == null)            throw new WebApplicationException(401);
+      if (header.endsWith(" error")) throw new InternalServerErrorException();
+
+      requestContext.setSecurityContext(new AuthSecurityContext<>(header.substring(prefix.length() + 1), false));
+    }
+
+    static class Builder extends AuthFilterBuilder<String, String, HeaderAuthFilter> {
+      Builder() {
+        setPrefix("Legacy");
+      }
+
+      @Override
+      protected HeaderAuthFilter newInstance() {
+        return new HeaderAuthFilter();
+      }
+    }
+  }
+}
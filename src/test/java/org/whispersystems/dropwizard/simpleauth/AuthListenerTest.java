@@ -0,0 +1,120 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.glassfish.hk2.api.Factory;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.internal.inject.MultivaluedParameterExtractorProvider;
+import org.glassfish.jersey.server.model.Parameter;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import io.dropwizard.auth.Auth;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class AuthListenerTest {
+
+  @Test
+  public void testStageCallbacks() throws IOException {
+    List<String>             events    = new ArrayList<>();
+    HdrHistogramAuthListener histogram = new HdrHistogramAuthListener();
+
+    AuthListener listener = new AuthListener() {
+      @Override
+      public void onStart(AuthStage stage, Class<?> principalType, String realm) {
+        events.add("start " + stage);
+      }
+
+      @Override
+      public void onEnd(AuthStage stage, Class<?> principalType, String realm, long durationNanos, AuthResult result) {
+        events.add("end " + stage + " " + result);
+        histogram.onEnd(stage, principalType, realm, durationNanos, result);
+      }
+    };
+
+    AuthFilter<BasicCredentials, String> authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(credentials -> Optional.empty())
+                                                                                                     .setAuthListener(listener)
+                                                                                                     .setPrincipal(String.class)
+                                                                                                     .setRealm("Hmm")
+                                                                                                     .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    headers.add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpmb28=");
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    try {
+      authFilter.filter(containerRequestContext);
+      throw new AssertionError("Shouldn't succeed");
+    } catch (WebApplicationException wae) {
+      assertEquals(wae.getResponse().getStatus(), 401);
+    }
+
+    assertEquals(events.toString(), "[start REQUEST, start AUTHENTICATOR, end AUTHENTICATOR INVALID_CREDENTIALS, " +
+                                    "end REQUEST INVALID_CREDENTIALS, start REJECTION, end REJECTION INVALID_CREDENTIALS]");
+
+    assertEquals(histogram.getIntervalHistogram(String.class, "Hmm", AuthStage.REQUEST).getTotalCount(), 1);
+    assertEquals(histogram.getIntervalHistogram(String.class, "Hmm", AuthStage.AUTHENTICATOR).getTotalCount(), 1);
+    assertEquals(histogram.getIntervalHistogram(String.class, "Hmm", AuthStage.REQUEST).getTotalCount(), 0);
+    assertEquals(histogram.getIntervalHistogram(Integer.class, "Hmm", AuthStage.AUTHENTICATOR).getTotalCount(), 0);
+  }
+
+  @Test
+  public void testInjectionStage() {
+    List<String>             events    = new ArrayList<>();
+    HdrHistogramAuthListener histogram = new HdrHistogramAuthListener();
+
+    AuthListener listener = new AuthListener() {
+      @Override
+      public void onStart(AuthStage stage, Class<?> principalType, String realm) {
+        events.add("start " + stage + " " + principalType.getSimpleName() + " " + realm);
+      }
+
+      @Override
+      public void onEnd(AuthStage stage, Class<?> principalType, String realm, long durationNanos, AuthResult result) {
+        events.add("end " + stage + " " + result);
+        histogram.onEnd(stage, principalType, realm, durationNanos, result);
+      }
+    };
+
+    ContainerRequest request = mock(ContainerRequest.class);
+    when(request.getProperty(AuthFilter.PRINCIPAL_PROPERTY)).thenReturn("user");
+
+    ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+
+    ServiceLocatorUtilities.bind(locator, new AuthValueFactoryProvider.Binder(listener), new AbstractBinder() {
+      @Override
+      protected void configure() {
+        bind(request).to(ContainerRequest.class);
+      }
+    });
+
+    Parameter parameter = mock(Parameter.class);
+    when(parameter.getAnnotation(Auth.class)).thenReturn(mock(Auth.class));
+    doReturn(String.class).when(parameter).getRawType();
+
+    Factory<?> factory = new AuthValueFactoryProvider(mock(MultivaluedParameterExtractorProvider.class), locator).createValueFactory(parameter);
+    locator.inject(factory);
+
+    assertEquals(factory.provide(), "user");
+    assertEquals(events.toString(), "[start INJECTION String null, end INJECTION AUTHENTICATED]");
+
+    assertEquals(histogram.getIntervalHistogram(String.class, "injection", AuthStage.INJECTION).getTotalCount(), 0);
+    assertEquals(histogram.getIntervalHistogram(String.class, null, AuthStage.INJECTION).getTotalCount(), 1);
+  }
+}
@@ -0,0 +1,101 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.glassfish.hk2.api.Factory;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.internal.inject.MultivaluedParameterExtractorProvider;
+import org.glassfish.jersey.server.model.Parameter;
+import org.junit.Test;
+
+import javax.ws.rs.core.SecurityContext;
+import java.util.Optional;
+
+import io.dropwizard.auth.Auth;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.*;
+
+public class AuthValueFactoryProviderTest {
+
+  @Test
+  public void testPrincipalPropertyFastPath() {
+    ContainerRequest request = request("user", null);
+
+    assertEquals(provide(String.class, request), "user");
+    assertEquals(provide(Optional.class, request), Optional.of("user"));
+
+    verify(request, never()).getSecurityContext();
+  }
+
+  @Test
+  public void testPrincipalPropertyOfWrongType() {
+    assertEquals(provide(String.class, request(42, new AuthSecurityContext<>("user", false))), "user");
+
+    try {
+      provide(String.class, request(42, new AuthSecurityContext<>(42, false)));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (IllegalArgumentException e) {
+      // Good
+    }
+  }
+
+  @Test
+  public void testSecurityContextFallback() {
+    assertEquals(provide(String.class, request(null, new AuthSecurityContext<>("user", false))), "user");
+    assertEquals(provide(Optional.class, request(null, new AuthSecurityContext<>("user", false))), Optional.of("user"));
+    assertEquals(provide(Optional.class, request(null, null)), Optional.empty());
+
+    try {
+      provide(String.class, request(null, null));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (IllegalStateException e) {
+      // Good
+    }
+  }
+
+  @Test
+  public void testUnannotatedParameter() {
+    Parameter parameter = mock(Parameter.class);
+    doReturn(String.class).when(parameter).getRawType();
+
+    assertNull(new AuthValueFactoryProvider(mock(MultivaluedParameterExtractorProvider.class),
+                                            ServiceLocatorFactory.getInstance().create(null)).createValueFactory(parameter));
+  }
+
+  private static Object provide(Class<?> rawType, ContainerRequest request) {
+    ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+
+    ServiceLocatorUtilities.bind(locator, new AuthValueFactoryProvider.Binder(), new AbstractBinder() {
+      @Override
+      protected void configure() {
+        bind(request).to(ContainerRequest.class);
+      }
+    });
+
+    Parameter parameter = mock(Parameter.class);
+    when(parameter.getAnnotation(Auth.class)).thenReturn(mock(Auth.class));
+    doReturn(rawType).when(parameter).getRawType();
+
+    Factory<?> factory = new AuthValueFactoryProvider(mock(MultivaluedParameterExtractorProvider.class), locator).createValueFactory(parameter);
+    locator.inject(factory);
+
+    return factory.provide();
+  }
+
+  private static ContainerRequest request(Object principal, SecurityContext securityContext) {
+    SecurityContext context = securityContext;
+
+    if (context == null) {
+      context = mock(SecurityContext.class);
+    }
+
+    ContainerRequest request = mock(ContainerRequest.class);
+    when(request.getProperty(AuthFilter.PRINCIPAL_PROPERTY)).thenReturn(principal);
+    when(request.getSecurityContext()).thenReturn(context);
+
+    return request;
+  }
+}
@@ -1,10 +1,14 @@
 package org.whispersystems.dropwizard.simpleauth;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
@@ -12,10 +16,18 @@ import javax.ws.rs.core.SecurityContext;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.basic.BasicCredentials;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -42,6 +54,7 @@ public class BasicCredentialAuthFilterTest {
 
     assertTrue(captor.getValue().getUserPrincipal() instanceof AuthPrincipal);
     assertEquals(((AuthPrincipal) captor.getValue().getUserPrincipal()).getAuthenticated(), "user");
+    verify(containerRequestContext).setProperty(AuthFilter.PRINCIPAL_PROPERTY, "user");
   }
 
   @Test
@@ -64,9 +77,438 @@ public class BasicCredentialAuthFilterTest {
     } catch (WebApplicationException wae) {
       verify(containerRequestContext, times(0)).setSecurityContext(any(SecurityContext.class));
       assertEquals(wae.getResponse().getStatus(), 401);
+      assertEquals(wae.getStackTrace().length, 0);
     }
   }
 
+  @Test
+  public void testOptionalInvalidAuth() throws IOException {
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                           .setPrincipal(String.class)
+                                                                           .setRealm("Hmm")
+                                                                           .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<String, String>() {{
+      add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpiYXo=");
+    }};
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    assertEquals(authFilter.authenticate(containerRequestContext), AuthResult.INVALID_CREDENTIALS);
+
+    new WebApplicationExceptionCatchingFilter(authFilter).filter(containerRequestContext);
+    verify(containerRequestContext, times(0)).setSecurityContext(any(SecurityContext.class));
+  }
+
+  @Test
+  public void testCaseInsensitivePrefix() throws IOException {
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                           .setPrincipal(String.class)
+                                                                           .setRealm("Hmm")
+                                                                           .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<String, String>() {{
+      add(HttpHeaders.AUTHORIZATION, "bASIC dXNlcjpmb28=");
+    }};
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    authFilter.filter(containerRequestContext);
+
+    verify(containerRequestContext).setSecurityContext(any(SecurityContext.class));
+  }
+
+  @Test
+  public void testMalformedAuth() throws IOException {
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                           .setPrincipal(String.class)
+                                                                           .setRealm("Hmm")
+                                                                           .buildAuthFilter();
+
+    String[] malformed = {"Basic", "Basic ", "Basic dXNlcjpmb28", "Basic dXNlcjpmb2=8", "Basic dXNlcj*mb28=",
+                          "Basic Zm9v", "Basic OmZvbw==", "Basicx dXNlcjpmb28=", "Bearer dXNlcjpmb28=",
+                          "Basic  dXNlcjpmb28="};
+
+    for (String header : malformed) {
+      MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+      headers.add(HttpHeaders.AUTHORIZATION, header);
+
+      ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+      when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+      try {
+        authFilter.filter(containerRequestContext);
+        throw new AssertionError("Shouldn't succeed: " + header);
+      } catch (WebApplicationException wae) {
+        verify(containerRequestContext, times(0)).setSecurityContext(any(SecurityContext.class));
+        assertEquals(wae.getResponse().getStatus(), 401);
+      }
+    }
+  }
+
+  @Test
+  public void testMetrics() throws IOException {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    AuthFilter     authFilter     = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                                   .setMetricRegistry(metricRegistry)
+                                                                                   .setPrincipal(String.class)
+                                                                                   .setRealm("Hmm")
+                                                                                   .buildAuthFilter();
+
+    String[] requests = {"Basic dXNlcjpmb28=", "Basic dXNlcjpiYXo=", "Basic dXNlcj*mb28=", "Bearer foo"};
+
+    for (String header : requests) {
+      MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+      headers.add(HttpHeaders.AUTHORIZATION, header);
+
+      ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+      when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+      authFilter.authenticate(containerRequestContext);
+    }
+
+    String prefix = MetricRegistry.name(AuthFilter.class, String.class.getName(), "Hmm");
+
+    assertEquals(metricRegistry.timer(prefix + ".authenticate").getCount(), 2);
+    assertEquals(metricRegistry.meter(prefix + ".authenticated").getCount(), 1);
+    assertEquals(metricRegistry.meter(prefix + ".invalid").getCount(), 1);
+    assertEquals(metricRegistry.meter(prefix + ".malformed").getCount(), 1);
+    assertEquals(metricRegistry.meter(prefix + ".missing").getCount(), 1);
+    assertEquals(metricRegistry.getGauges().get(prefix + ".inFlight").getValue(), 0);
+    assertFalse(metricRegistry.getNames().contains(prefix + ".ticket"));
+    assertFalse(metricRegistry.getNames().contains(prefix + ".password"));
+
+    try {
+      new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                     .setMetricRegistry(metricRegistry)
+                                                     .setPrincipal(String.class)
+                                                     .setRealm("Hmm")
+                                                     .buildAuthFilter();
+      throw new AssertionError("Shouldn't share metrics");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains(prefix));
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testLazyAuthorization() throws IOException {
+    Authorizer<String> authorizer = mock(Authorizer.class);
+    when(authorizer.authorize("user", "admin")).thenReturn(true);
+
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                           .setAuthorizer(authorizer)
+                                                                           .setPrincipal(String.class)
+                                                                           .setRealm("Hmm")
+                                                                           .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<String, String>() {{
+      add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpmb28=");
+    }};
+
+    SecurityContext transport = mock(SecurityContext.class);
+    when(transport.isSecure()).thenReturn(true);
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+    when(containerRequestContext.getSecurityContext()).thenReturn(transport);
+
+    authFilter.filter(containerRequestContext);
+
+    ArgumentCaptor<SecurityContext> captor = ArgumentCaptor.forClass(SecurityContext.class);
+    verify(containerRequestContext).setSecurityContext(captor.capture());
+    verifyZeroInteractions(authorizer);
+
+    SecurityContext securityContext = captor.getValue();
+
+    assertTrue(securityContext.isSecure());
+    assertTrue(securityContext.getUserPrincipal() == securityContext);
+    assertEquals(securityContext.getUserPrincipal().getName(), "user");
+    assertTrue(securityContext.isUserInRole("admin"));
+    assertTrue(securityContext.isUserInRole("admin"));
+    verify(authorizer, times(1)).authorize("user", "admin");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testAuthorizationCacheInvalidation() {
+    Authorizer<String> authorizer = mock(Authorizer.class);
+    when(authorizer.authorize("user", "admin")).thenReturn(true, false);
+
+    AuthFilter<BasicCredentials, String> authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                                                     .setAuthorizer(authorizer)
+                                                                                                     .setAuthorizationCachePolicy(CacheBuilderSpec.parse("maximumSize=100"))
+                                                                                                     .setPrincipal(String.class)
+                                                                                                     .buildAuthFilter();
+
+    assertTrue(authFilter.getAuthorizer() instanceof CachingAuthorizer);
+    assertTrue(authFilter.getAuthorizer().authorize("user", "admin"));
+    assertTrue(authFilter.getAuthorizer().authorize("user", "admin"));
+
+    authFilter.invalidateAuthorization("user");
+
+    assertFalse(authFilter.getAuthorizer().authorize("user", "admin"));
+    verify(authorizer, times(2)).authorize("user", "admin");
+  }
+
+  @Test
+  public void testOffloadedAuth() throws IOException {
+    ExecutorService executor   = Executors.newSingleThreadExecutor();
+    AuthFilter      authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                                .setAuthenticationExecutor(executor)
+                                                                                .setPrincipal(String.class)
+                                                                                .setRealm("Hmm")
+                                                                                .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<String, String>() {{
+      add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpmb28=");
+    }};
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    try {
+      authFilter.filter(containerRequestContext);
+    } finally {
+      executor.shutdown();
+    }
+
+    ArgumentCaptor<SecurityContext> captor = ArgumentCaptor.forClass(SecurityContext.class);
+    verify(containerRequestContext).setSecurityContext(captor.capture());
+
+    assertEquals(((AuthPrincipal) captor.getValue().getUserPrincipal()).getAuthenticated(), "user");
+  }
+
+  @Test
+  public void testOffloadedAuthTimeoutInterrupts() throws Exception {
+    ExecutorService executor    = Executors.newSingleThreadExecutor();
+    CountDownLatch  interrupted = new CountDownLatch(1);
+
+    Authenticator<BasicCredentials, String> authenticator = credentials -> {
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+      }
+      return Optional.empty();
+    };
+
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(authenticator)
+                                                                           .setAuthenticationExecutor(executor)
+                                                                           .setAuthenticationTimeout(10, TimeUnit.MILLISECONDS)
+                                                                           .setPrincipal(String.class)
+                                                                           .buildAuthFilter();
+
+    try {
+      assertEquals(authFilter.authenticate(request("Basic dXNlcjpmb28=")), AuthResult.ERROR);
+      assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSaturatedExecutorIsUnavailable() throws Exception {
+    CountDownLatch     release  = new CountDownLatch(1);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+
+    executor.execute(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                                           .setAuthenticationExecutor(executor)
+                                                                           .setPrincipal(String.class)
+                                                                           .buildAuthFilter();
+
+    try {
+      assertEquals(authFilter.authenticate(request("Basic dXNlcjpmb28=")), AuthResult.UNAVAILABLE);
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAsyncAuthenticatorIsExclusive() {
+    new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(new StringAuthenticator())
+                                                   .setAsyncAuthenticator(credentials -> CompletableFuture.completedFuture(Optional.empty()))
+                                                   .setPrincipal(String.class)
+                                                   .buildAuthFilter();
+  }
+
+  @Test
+  public void testAsyncAuthTimeout() throws IOException {
+    AuthFilter authFilter = new BasicCredentialAuthFilter.Builder<String>().setAsyncAuthenticator(credentials -> new CompletableFuture<>())
+                                                                           .setAuthenticationTimeout(10, TimeUnit.MILLISECONDS)
+                                                                           .setPrincipal(String.class)
+                                                                           .setRealm("Hmm")
+                                                                           .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<String, String>() {{
+      add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpmb28=");
+    }};
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    try {
+      authFilter.filter(containerRequestContext);
+      throw new AssertionError("Shouldn't succeed");
+    } catch (InternalServerErrorException e) {
+      verify(containerRequestContext, times(0)).setSecurityContext(any(SecurityContext.class));
+    }
+  }
+
+  @Test
+  public void testRateLimiting() throws Exception {
+    StringAuthenticator authenticator   = spy(new StringAuthenticator());
+    AuthRateLimiter     usernameLimiter = new AuthRateLimiter(2, 1, TimeUnit.HOURS, 100);
+    AuthRateLimiter     addressLimiter  = new AuthRateLimiter(4, 1, TimeUnit.HOURS, 100);
+    AuthFilter          authFilter      = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(authenticator)
+                                                                                         .setCredentialRateLimiter(usernameLimiter)
+                                                                                         .setRemoteAddressRateLimiter(addressLimiter, request -> request.getHeaders().getFirst("X-Forwarded-For"))
+                                                                                         .setPrincipal(String.class)
+                                                                                         .setRealm("Hmm")
+                                                                                         .buildAuthFilter();
+
+    String[] attempts = {"Basic dXNlcjpiYXo=", "Basic dXNlcjpiYXo=", "Basic dXNlcjpmb28=", "Basic b3RoZXI6YmF6",
+                         "Basic dXNlcjpmb28=", "Basic b3RoZXI6YmF6", "Basic b3RoZXI6YmF6"};
+    int[]    statuses = {401, 401, 429, 401, 429, 401, 429};
+
+    for (int i=0;i<attempts.length;i++) {
+      MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+      headers.add(HttpHeaders.AUTHORIZATION, attempts[i]);
+      headers.add("X-Forwarded-For", "10.0.0.1");
+
+      ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+      when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+      try {
+        authFilter.filter(containerRequestContext);
+        throw new AssertionError("Shouldn't succeed: " + i);
+      } catch (WebApplicationException wae) {
+        assertEquals(wae.getResponse().getStatus(), statuses[i]);
+
+        if (statuses[i] == 429) {
+          assertEquals(wae.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER), "3600");
+        }
+      }
+    }
+
+    // user is blocked after two failures, so the correct password never reaches the authenticator,
+    // and those throttled attempts don't count against the address
+    verify(authenticator, times(4)).authenticate(any(BasicCredentials.class));
+    assertEquals(addressLimiter.getBlockedCount(), 1);
+    assertEquals(usernameLimiter.getBlockedCount(), 2);
+  }
+
+  @Test
+  public void testAlreadyAuthenticatedRequest() throws Exception {
+    StringAuthenticator authenticator = spy(new StringAuthenticator());
+    AuthFilter          authFilter    = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(authenticator)
+                                                                                       .setPrincipal(String.class)
+                                                                                       .setRealm("Hmm")
+                                                                                       .buildAuthFilter();
+
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<String, String>() {{
+      add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpmb28=");
+    }};
+
+    ContainerRequestContext byProperty = mock(ContainerRequestContext.class);
+    when(byProperty.getHeaders()).thenReturn(headers);
+    when(byProperty.getProperty(AuthFilter.PRINCIPAL_PROPERTY)).thenReturn("user");
+
+    ContainerRequestContext bySecurityContext = mock(ContainerRequestContext.class);
+    when(bySecurityContext.getHeaders()).thenReturn(headers);
+    when(bySecurityContext.getSecurityContext()).thenReturn(new AuthSecurityContext<>("user", false));
+
+    ContainerRequestContext incompatible = mock(ContainerRequestContext.class);
+    when(incompatible.getHeaders()).thenReturn(headers);
+    when(incompatible.getProperty(AuthFilter.PRINCIPAL_PROPERTY)).thenReturn(42);
+
+    authFilter.filter(byProperty);
+    authFilter.filter(bySecurityContext);
+    authFilter.filter(incompatible);
+
+    verify(bySecurityContext).setProperty(AuthFilter.PRINCIPAL_PROPERTY, "user");
+    verify(bySecurityContext, times(0)).setSecurityContext(any(SecurityContext.class));
+    verify(authenticator, times(1)).authenticate(any(BasicCredentials.class));
+    assertEquals(authFilter.getReusedCount(), 2);
+  }
+
+  @Test
+  public void testSessionTickets() throws Exception {
+    TokenSigner         ticketSigner   = new TokenSigner("k1", "0123456789abcdef0123456789abcdef".getBytes());
+    StringAuthenticator authenticator  = spy(new StringAuthenticator());
+    MetricRegistry      metricRegistry = new MetricRegistry();
+
+    BasicCredentialAuthFilter<String> authFilter = (BasicCredentialAuthFilter<String>) new BasicCredentialAuthFilter.Builder<String>()
+        .setSessionTickets(ticketSigner, ticket -> Optional.of(ticket.getSubject()), 5, TimeUnit.MINUTES)
+        .setMetricRegistry(metricRegistry)
+        .setAuthenticator(authenticator)
+        .setPrincipal(String.class)
+        .setRealm("Hmm")
+        .buildAuthFilter();
+
+    ContainerRequestContext login = request("Basic dXNlcjpmb28=");
+    assertEquals(authFilter.authenticate(login), AuthResult.AUTHENTICATED);
+
+    ArgumentCaptor<Object> ticket = ArgumentCaptor.forClass(Object.class);
+    verify(login).setProperty(eq(BasicCredentialAuthFilter.TICKET_PROPERTY), ticket.capture());
+
+    MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+    ContainerResponseContext       response        = mock(ContainerResponseContext.class);
+    when(login.getProperty(BasicCredentialAuthFilter.TICKET_PROPERTY)).thenReturn(ticket.getValue());
+    when(response.getHeaders()).thenReturn(responseHeaders);
+
+    new SessionTicketResponseFilter().filter(login, response);
+    assertEquals(responseHeaders.getFirst(BasicCredentialAuthFilter.TICKET_HEADER), ticket.getValue());
+
+    ContainerRequestContext withTicket = request(null);
+    withTicket.getHeaders().add(BasicCredentialAuthFilter.TICKET_HEADER, (String) ticket.getValue());
+    assertEquals(authFilter.authenticate(withTicket), AuthResult.AUTHENTICATED);
+
+    ContainerRequestContext expired = request("Basic dXNlcjpmb28=");
+    expired.getHeaders().add(BasicCredentialAuthFilter.TICKET_HEADER, ticketSigner.sign("user", System.currentTimeMillis() - 1000));
+    assertEquals(authFilter.authenticate(expired), AuthResult.AUTHENTICATED);
+
+    ContainerRequestContext bearer = request(null);
+    bearer.getHeaders().add(BasicCredentialAuthFilter.TICKET_HEADER, ticketSigner.sign("user", System.currentTimeMillis() + 60000));
+    assertEquals(authFilter.authenticate(bearer), AuthResult.MISSING_CREDENTIALS);
+
+    AuthFilter<SignedToken, String> bearerFilter = new BearerTokenAuthFilter.Builder<String>().setTokenSigner(ticketSigner)
+                                                                                             .setAuthenticator(token -> Optional.of(token.getSubject()))
+                                                                                             .setPrincipal(String.class)
+                                                                                             .buildAuthFilter();
+
+    assertEquals(bearerFilter.authenticate(request("Bearer " + ticket.getValue())), AuthResult.INVALID_CREDENTIALS);
+
+    verify(authenticator, times(2)).authenticate(any(BasicCredentials.class));
+    assertEquals(authFilter.getTicketAuthenticatedCount(), 1);
+    assertEquals(authFilter.getPasswordAuthenticatedCount(), 2);
+
+    String prefix = MetricRegistry.name(AuthFilter.class, String.class.getName(), "Hmm");
+    assertEquals(metricRegistry.meter(MetricRegistry.name(prefix, "ticket")).getCount(), 1);
+    assertEquals(metricRegistry.meter(MetricRegistry.name(prefix, "password")).getCount(), 2);
+    assertEquals(metricRegistry.timer(MetricRegistry.name(prefix, "authenticate")).getCount(), 3);
+  }
+
+  private static ContainerRequestContext request(String authorization) {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    if (authorization != null) headers.add(HttpHeaders.AUTHORIZATION, authorization);
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    return containerRequestContext;
+  }
 
   private static class StringAuthenticator implements Authenticator<BasicCredentials, String> {
 
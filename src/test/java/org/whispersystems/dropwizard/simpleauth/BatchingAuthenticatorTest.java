@@ -0,0 +1,208 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchingAuthenticatorTest {
+
+  @Test
+  public void testConcurrentCallsShareBatch() throws Exception {
+    AtomicInteger   batches  = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    BatchingAuthenticator<BasicCredentials, String> authenticator = new BatchingAuthenticator<>(credentials -> {
+      batches.incrementAndGet();
+
+      Map<BasicCredentials, Optional<String>> results = new HashMap<>();
+
+      for (BasicCredentials credential : credentials) {
+        if (!credential.getUsername().equals("user3")) {
+          results.put(credential, Optional.of(credential.getUsername()));
+        }
+      }
+
+      return results;
+    }, 8, 1, 5, TimeUnit.SECONDS);
+
+    authenticator.start();
+
+    try {
+      List<Future<Optional<String>>> results = new ArrayList<>();
+
+      for (int i=0;i<8;i++) {
+        BasicCredentials credentials = new BasicCredentials("user" + (i % 4), "foo");
+        results.add(executor.submit(() -> authenticator.authenticate(credentials)));
+      }
+
+      for (int i=0;i<8;i++) {
+        assertEquals(results.get(i).get(), i % 4 == 3 ? Optional.empty() : Optional.of("user" + (i % 4)));
+      }
+
+      assertEquals(batches.get(), 1);
+      assertEquals(authenticator.getBatchSizeHistogram().getCount(), 1);
+      assertEquals(authenticator.getBatchSizeHistogram().getSnapshot().getMax(), 4);
+      assertEquals(authenticator.getWaitTimeHistogram().getCount(), 8);
+    } finally {
+      authenticator.stop();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailedBatchFailsEveryCaller() throws Exception {
+    BatchingAuthenticator<BasicCredentials, String> authenticator = new BatchingAuthenticator<>(credentials -> {
+      throw new AuthenticationException("store down");
+    }, 4, 1, 5000, TimeUnit.MILLISECONDS);
+
+    authenticator.start();
+
+    try {
+      authenticator.authenticate(new BasicCredentials("user", "foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (AuthenticationException e) {
+      assertEquals(e.getMessage(), "store down");
+    } finally {
+      authenticator.stop();
+    }
+
+    try {
+      authenticator.authenticate(new BasicCredentials("user", "foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (AuthenticationException e) {
+      assertTrue(e instanceof AuthenticationUnavailableException);
+    }
+  }
+
+  @Test
+  public void testTimedOutCallsAreSkipped() throws Exception {
+    CountDownLatch  entered  = new CountDownLatch(1);
+    CountDownLatch  release  = new CountDownLatch(1);
+    List<String>    seen     = Collections.synchronizedList(new ArrayList<>());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    BatchingAuthenticator<BasicCredentials, String> authenticator = new BatchingAuthenticator<>(credentials -> {
+      Map<BasicCredentials, Optional<String>> results = new HashMap<>();
+
+      for (BasicCredentials credential : credentials) {
+        seen.add(credential.getUsername());
+        results.put(credential, Optional.of(credential.getUsername()));
+      }
+
+      entered.countDown();
+      Uninterruptibles.awaitUninterruptibly(release);
+      return results;
+    }, 4, 1, 100, TimeUnit.MILLISECONDS);
+
+    authenticator.start();
+
+    try {
+      Future<Optional<String>> first = executor.submit(() -> authenticator.authenticate(new BasicCredentials("first", "foo")));
+      assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+      try {
+        authenticator.authenticate(new BasicCredentials("second", "foo"));
+        throw new AssertionError("Shouldn't succeed");
+      } catch (AuthenticationUnavailableException e) {
+        // Good
+      }
+
+      release.countDown();
+
+      try {
+        first.get();
+        throw new AssertionError("Shouldn't succeed");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof AuthenticationUnavailableException);
+      }
+
+      assertEquals(authenticator.authenticate(new BasicCredentials("third", "foo")), Optional.of("third"));
+      assertEquals(seen, Arrays.asList("first", "third"));
+    } finally {
+      authenticator.stop();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testNotStarted() throws Exception {
+    BatchingAuthenticator<BasicCredentials, String> authenticator = new BatchingAuthenticator<>(credentials -> {
+      throw new AssertionError("Shouldn't be called");
+    }, 4, 1, 5000, TimeUnit.MILLISECONDS);
+
+    try {
+      authenticator.authenticate(new BasicCredentials("user", "foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (AuthenticationUnavailableException e) {
+      // Good
+    }
+  }
+
+  @Test
+  public void testRejectedBatchFailsCallers() throws Exception {
+    BatchingAuthenticator<BasicCredentials, String> authenticator = new BatchingAuthenticator<>(credentials -> {
+      throw new AssertionError("Shouldn't be called");
+    }, 4, 1, 5000, TimeUnit.MILLISECONDS, command -> {
+      throw new RejectedExecutionException();
+    });
+
+    authenticator.start();
+
+    try {
+      authenticator.authenticate(new BasicCredentials("user", "foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (AuthenticationUnavailableException e) {
+      // Good
+    } finally {
+      authenticator.stop();
+    }
+  }
+
+  @Test
+  public void testErrorDoesntStopDispatcher() throws Exception {
+    AtomicInteger batches = new AtomicInteger();
+
+    BatchingAuthenticator<BasicCredentials, String> authenticator = new BatchingAuthenticator<>(credentials -> {
+      if (batches.incrementAndGet() == 1) throw new StackOverflowError();
+
+      Map<BasicCredentials, Optional<String>> results = new HashMap<>();
+      for (BasicCredentials credential : credentials) results.put(credential, Optional.of(credential.getUsername()));
+      return results;
+    }, 4, 1, 5000, TimeUnit.MILLISECONDS);
+
+    authenticator.start();
+
+    try {
+      authenticator.authenticate(new BasicCredentials("user", "foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (AuthenticationException e) {
+      assertTrue(e.getCause() instanceof StackOverflowError);
+    }
+
+    try {
+      assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    } finally {
+      authenticator.stop();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.AuthenticationException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.*;
+
+public class BearerTokenAuthFilterTest {
+
+  private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes();
+
+  private final TokenSigner tokenSigner = new TokenSigner("k1", KEY);
+
+  @Test
+  public void testValidToken() throws Exception {
+    StringAuthenticator authenticator = spy(new StringAuthenticator());
+    AuthFilter          authFilter    = new BearerTokenAuthFilter.Builder<String>().setTokenSigner(tokenSigner)
+                                                                                   .setAuthenticator(authenticator)
+                                                                                   .setPrincipal(String.class)
+                                                                                   .setRealm("Hmm")
+                                                                                   .buildAuthFilter();
+
+    String token = tokenSigner.sign("user", System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+
+    for (int i=0;i<2;i++) {
+      ContainerRequestContext containerRequestContext = request("Bearer " + token);
+      authFilter.filter(containerRequestContext);
+
+      ArgumentCaptor<SecurityContext> captor = ArgumentCaptor.forClass(SecurityContext.class);
+      verify(containerRequestContext).setSecurityContext(captor.capture());
+      assertEquals(((AuthPrincipal) captor.getValue().getUserPrincipal()).getAuthenticated(), "user");
+    }
+
+    verify(authenticator, times(1)).authenticate(any(SignedToken.class));
+  }
+
+  @Test
+  public void testRejectedTokens() throws IOException {
+    AuthFilter authFilter = new BearerTokenAuthFilter.Builder<String>().setTokenSigner(tokenSigner)
+                                                                       .setAuthenticator(new StringAuthenticator())
+                                                                       .setPrincipal(String.class)
+                                                                       .setRealm("Hmm")
+                                                                       .buildAuthFilter();
+
+    String valid   = tokenSigner.sign("user", System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+    String expired = tokenSigner.sign("user", System.currentTimeMillis() - 1000);
+    String padded  = valid.substring(0, valid.length() - 1) + flipLowBit(valid.charAt(valid.length() - 1));
+    String forged  = new TokenSigner("k1", "fedcba9876543210fedcba9876543210".getBytes()).sign("user", System.currentTimeMillis() + 60000);
+
+    String[] rejected = {"Bearer " + expired, "Bearer " + forged, "Bearer " + padded, "Bearer " + valid.replace("k1.", "k2."),
+                         "Bearer " + valid.substring(0, valid.length() - 2), "Bearer " + valid.replace("k1.", "k\u00e9."),
+                         "Bearer nodots", "Basic dXNlcjpmb28="};
+
+    for (String header : rejected) {
+      ContainerRequestContext containerRequestContext = request(header);
+
+      try {
+        authFilter.filter(containerRequestContext);
+        throw new AssertionError("Shouldn't succeed: " + header);
+      } catch (WebApplicationException wae) {
+        verify(containerRequestContext, times(0)).setSecurityContext(any(SecurityContext.class));
+        assertEquals(wae.getResponse().getStatus(), 401);
+      }
+    }
+  }
+
+  @Test
+  public void testCacheKeyedByWholeToken() throws IOException {
+    AuthFilter authFilter = new BearerTokenAuthFilter.Builder<String>().setTokenSigner(tokenSigner)
+                                                                       .setAuthenticator(new StringAuthenticator())
+                                                                       .setPrincipal(String.class)
+                                                                       .setRealm("Hmm")
+                                                                       .buildAuthFilter();
+
+    String valid  = tokenSigner.sign("user", System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+    String other  = tokenSigner.sign("admin", System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+    String spoof  = other.substring(0, other.lastIndexOf('.')) + valid.substring(valid.lastIndexOf('.'));
+
+    assertEquals(authFilter.authenticate(request("Bearer " + valid)), AuthResult.AUTHENTICATED);
+    assertEquals(authFilter.authenticate(request("Bearer " + spoof)), AuthResult.INVALID_CREDENTIALS);
+  }
+
+  @Test
+  public void testQueryParameterToken() throws IOException {
+    AuthFilter authFilter = new BearerTokenAuthFilter.Builder<String>().setTokenSigner(tokenSigner)
+                                                                       .setQueryParameter("access_token")
+                                                                       .setAuthenticator(new StringAuthenticator())
+                                                                       .setPrincipal(String.class)
+                                                                       .setRealm("Hmm")
+                                                                       .buildAuthFilter();
+
+    MultivaluedMap<String, String> queryParameters = new MultivaluedHashMap<>();
+    queryParameters.add("access_token", tokenSigner.sign("user", System.currentTimeMillis() + 60000));
+
+    UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getQueryParameters()).thenReturn(queryParameters);
+
+    ContainerRequestContext containerRequestContext = request(null);
+    when(containerRequestContext.getUriInfo()).thenReturn(uriInfo);
+
+    assertEquals(authFilter.authenticate(containerRequestContext), AuthResult.AUTHENTICATED);
+  }
+
+  @Test
+  public void testKeyRotation() {
+    Map<String, byte[]> keys = new HashMap<>();
+    keys.put("k1", KEY);
+    keys.put("k2", "fedcba9876543210fedcba9876543210".getBytes());
+
+    TokenSigner rotated = new TokenSigner("k2", keys);
+    String      old     = tokenSigner.sign("user", System.currentTimeMillis() + 60000);
+    String      current = rotated.sign("user", System.currentTimeMillis() + 60000);
+
+    assertNotNull(rotated.verify(old));
+    assertNotNull(rotated.verify(current));
+    assertNull(tokenSigner.verify(current));
+    assertEquals(rotated.verify(current).getSubject(), "user");
+  }
+
+  @Test
+  public void testNonAsciiKeyIdRejected() {
+    try {
+      new TokenSigner("cl\u00e9", KEY);
+      throw new AssertionError("Shouldn't succeed");
+    } catch (IllegalArgumentException e) {
+      // Good
+    }
+  }
+
+  private static char flipLowBit(char c) {
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    return alphabet.charAt(alphabet.indexOf(c) ^ 1);
+  }
+
+  private static ContainerRequestContext request(String authorization) {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    if (authorization != null) headers.add(HttpHeaders.AUTHORIZATION, authorization);
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    return containerRequestContext;
+  }
+
+  private static class StringAuthenticator implements Authenticator<SignedToken, String> {
+    @Override
+    public Optional<String> authenticate(SignedToken token) throws AuthenticationException {
+      return Optional.of(token.getSubject());
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.cache.CacheBuilderSpec;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class CachingAuthenticatorTest {
+
+  @SuppressWarnings("unchecked")
+  private final Authenticator<BasicCredentials, String> underlying = mock(Authenticator.class);
+
+  @Test
+  public void testPositiveCaching() throws AuthenticationException {
+    BasicCredentials credentials = new BasicCredentials("user", "foo");
+    when(underlying.authenticate(credentials)).thenReturn(Optional.of("user"));
+
+    CachingAuthenticator<BasicCredentials, String> authenticator =
+        new CachingAuthenticator<>(underlying, CacheBuilderSpec.parse("maximumSize=10"));
+
+    assertEquals(authenticator.authenticate(credentials), Optional.of("user"));
+    assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+
+    verify(underlying, times(1)).authenticate(credentials);
+    assertEquals(authenticator.stats().hitCount(), 1);
+    assertEquals(authenticator.stats().missCount(), 1);
+  }
+
+  @Test
+  public void testNegativeCaching() throws AuthenticationException {
+    BasicCredentials credentials = new BasicCredentials("user", "bad");
+    when(underlying.authenticate(credentials)).thenReturn(Optional.empty());
+
+    CachingAuthenticator<BasicCredentials, String> authenticator =
+        new CachingAuthenticator<>(underlying, CacheBuilderSpec.parse("maximumSize=10"), CacheBuilderSpec.parse("maximumSize=10"));
+
+    assertFalse(authenticator.authenticate(credentials).isPresent());
+    assertFalse(authenticator.authenticate(credentials).isPresent());
+
+    verify(underlying, times(1)).authenticate(credentials);
+    assertEquals(authenticator.size(), 0);
+    assertEquals(authenticator.negativeStats().hitCount(), 1);
+  }
+
+  @Test
+  public void testInvalidatePrincipal() throws AuthenticationException {
+    BasicCredentials credentials = new BasicCredentials("user", "foo");
+    when(underlying.authenticate(credentials)).thenReturn(Optional.of("user"));
+
+    CachingAuthenticator<BasicCredentials, String> authenticator =
+        new CachingAuthenticator<>(underlying, CacheBuilderSpec.parse("maximumSize=10"));
+
+    authenticator.authenticate(credentials);
+    authenticator.invalidatePrincipal("user");
+    assertEquals(authenticator.size(), 0);
+
+    authenticator.authenticate(credentials);
+    verify(underlying, times(2)).authenticate(credentials);
+  }
+
+  @Test
+  public void testInvalidatePrincipalClearsRejections() throws AuthenticationException {
+    BasicCredentials changed = new BasicCredentials("user", "new");
+    when(underlying.authenticate(changed)).thenReturn(Optional.empty(), Optional.of("user"));
+
+    CachingAuthenticator<BasicCredentials, String> authenticator =
+        new CachingAuthenticator<>(underlying, CacheBuilderSpec.parse("maximumSize=10"), CacheBuilderSpec.parse("maximumSize=10"));
+
+    assertFalse(authenticator.authenticate(changed).isPresent());
+    authenticator.invalidatePrincipal("user");
+    assertEquals(authenticator.authenticate(changed), Optional.of("user"));
+  }
+
+  @Test
+  public void testDigestedKeys() {
+    CredentialsDigester digester = new CredentialsDigester();
+
+    assertEquals(digester.apply(new BasicCredentials("user", "foo")), digester.apply(new BasicCredentials("user", "foo")));
+    assertNotEquals(digester.apply(new BasicCredentials("user", "foo")), digester.apply(new BasicCredentials("user", "bar")));
+    assertNotEquals(digester.apply(new BasicCredentials("use", "rfoo")), digester.apply(new BasicCredentials("user", "foo")));
+    assertNotEquals(digester.apply(new BasicCredentials("a\0", "b")), digester.apply(new BasicCredentials("a", "\0b")));
+    assertTrue(digester.apply(new BasicCredentials("user", "foo")) instanceof CredentialsDigester.Digest);
+  }
+}
@@ -0,0 +1,173 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ChainedAuthFilterTest {
+
+  private final TokenSigner tokenSigner = new TokenSigner("k1", "0123456789abcdef0123456789abcdef".getBytes());
+
+  private final AuthFilter<SignedToken, String> bearer = new BearerTokenAuthFilter.Builder<String>().setTokenSigner(tokenSigner)
+                                                                                                   .setAuthenticator(token -> Optional.of(token.getSubject()))
+                                                                                                   .setPrincipal(String.class)
+                                                                                                   .buildAuthFilter();
+
+  @SuppressWarnings("unchecked")
+  private final Authenticator<BasicCredentials, String> basicAuthenticator = mock(Authenticator.class);
+
+  private final AuthFilter<BasicCredentials, String> basic = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(basicAuthenticator)
+                                                                                                           .setPrincipal(String.class)
+                                                                                                           .buildAuthFilter();
+
+  @Test
+  public void testSchemeDispatch() throws Exception {
+    when(basicAuthenticator.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+
+    ChainedAuthFilter<String> chained = new ChainedAuthFilter.Builder<String>().addFilter(bearer)
+                                                                              .addFilter(basic)
+                                                                              .build();
+
+    assertEquals(chained.authenticate(request("Bearer " + tokenSigner.sign("user", System.currentTimeMillis() + 60000))), AuthResult.AUTHENTICATED);
+    assertEquals(chained.authenticate(request("bearer garbage")), AuthResult.MALFORMED_CREDENTIALS);
+    assertEquals(chained.authenticate(request("Basic dXNlcjpmb28=")), AuthResult.AUTHENTICATED);
+    assertEquals(chained.authenticate(request("Digest foo")), AuthResult.MISSING_CREDENTIALS);
+    assertEquals(chained.authenticate(request(null)), AuthResult.MISSING_CREDENTIALS);
+
+    verify(basicAuthenticator, times(1)).authenticate(any(BasicCredentials.class));
+
+    assertEquals(chained.getDispatchCounts().get("Bearer"), Long.valueOf(2));
+    assertEquals(chained.getDispatchCounts().get("Basic"), Long.valueOf(1));
+    assertEquals(chained.getUnmatchedCount(), 2);
+    assertTrue(chained.supports(String.class));
+  }
+
+  @Test
+  public void testFallback() throws IOException {
+    AuthFilter<String, String> apiKey = new ApiKeyAuthFilter.Builder().setAuthenticator(key -> Optional.of("service"))
+                                                                      .setPrincipal(String.class)
+                                                                      .buildAuthFilter();
+
+    ChainedAuthFilter<String> chained = new ChainedAuthFilter.Builder<String>().addFilter(bearer)
+                                                                              .addFallbackFilter("api-key", apiKey)
+                                                                              .build();
+
+    ContainerRequestContext request = request(null);
+    request.getHeaders().add("X-Api-Key", "secret");
+
+    assertEquals(chained.authenticate(request), AuthResult.AUTHENTICATED);
+    assertEquals(chained.getDispatchCounts().get("api-key"), Long.valueOf(1));
+
+    try {
+      chained.filter(request("Digest foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (WebApplicationException wae) {
+      assertEquals(wae.getResponse().getStatus(), 401);
+      assertEquals(wae.getResponse().getHeaderString(HttpHeaders.WWW_AUTHENTICATE), "Bearer realm=\"realm\"");
+    }
+  }
+
+  @Test
+  public void testThrottledByChild() throws Exception {
+    AuthFilter<BasicCredentials, String> limited = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(basicAuthenticator)
+                                                                                                 .setCredentialRateLimiter(new AuthRateLimiter(1, 1, TimeUnit.HOURS, 100))
+                                                                                                 .setPrincipal(String.class)
+                                                                                                 .buildAuthFilter();
+
+    when(basicAuthenticator.authenticate(any(BasicCredentials.class))).thenReturn(Optional.empty());
+
+    ChainedAuthFilter<String> chained = new ChainedAuthFilter.Builder<String>().addFilter(bearer)
+                                                                              .addFilter(limited)
+                                                                              .build();
+
+    try {
+      chained.filter(request("Basic dXNlcjpiYXo="));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (WebApplicationException wae) {
+      assertEquals(wae.getResponse().getStatus(), 401);
+    }
+
+    try {
+      chained.filter(request("Basic dXNlcjpiYXo="));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (WebApplicationException wae) {
+      assertEquals(wae.getResponse().getStatus(), 429);
+      assertTrue(Long.parseLong(wae.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER)) > 0);
+    }
+  }
+
+  @Test
+  public void testDuplicatesRejected() {
+    AuthFilter<BasicCredentials, String> other = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(basicAuthenticator)
+                                                                                               .setPrincipal(String.class)
+                                                                                               .setPrefix("basic")
+                                                                                               .buildAuthFilter();
+
+    try {
+      new ChainedAuthFilter.Builder<String>().addFilter(basic).addFilter(other).build();
+      throw new AssertionError("Shouldn't succeed");
+    } catch (IllegalArgumentException e) {
+      // Good
+    }
+
+    try {
+      new ChainedAuthFilter.Builder<String>().addFallbackFilter("basic", basic).addFallbackFilter("basic", other);
+      throw new AssertionError("Shouldn't succeed");
+    } catch (IllegalArgumentException e) {
+      // Good
+    }
+  }
+
+  private static ContainerRequestContext request(String authorization) {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    if (authorization != null) headers.add(HttpHeaders.AUTHORIZATION, authorization);
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    return containerRequestContext;
+  }
+
+  private static class ApiKeyAuthFilter extends AuthFilter<String, String> {
+    @Override
+    protected AuthResult authenticateRequest(ContainerRequestContext requestContext) {
+      String key = requestContext.getHeaders().getFirst("X-Api-Key");
+
+      if (key == null) return AuthResult.MISSING_CREDENTIALS;
+
+      try {
+        Optional<String> principal = authenticateCredentials(key);
+
+        if (principal.isPresent()) {
+          setAuthenticatedPrincipal(requestContext, principal.get());
+          return AuthResult.AUTHENTICATED;
+        }
+
+        return AuthResult.INVALID_CREDENTIALS;
+      } catch (AuthenticationException e) {
+        return AuthResult.ERROR;
+      }
+    }
+
+    static class Builder extends AuthFilterBuilder<String, String, ApiKeyAuthFilter> {
+      @Override
+      protected ApiKeyAuthFilter newInstance() {
+        return new ApiKeyAuthFilter();
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.cache.CacheBuilderSpec;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class CircuitBreakerAuthenticatorTest {
+
+  private final AtomicBoolean down  = new AtomicBoolean();
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final Authenticator<BasicCredentials, String> backend = credentials -> {
+    calls.incrementAndGet();
+    if (down.get()) throw new AuthenticationException("database is down");
+    return Optional.of(credentials.getUsername());
+  };
+
+  @Test
+  public void testBreakerOpensAndRecovers() throws Exception {
+    CircuitBreakerAuthenticator<BasicCredentials, String> authenticator =
+        new CircuitBreakerAuthenticator<>(backend, 0, 2, 50, TimeUnit.MILLISECONDS, CacheBuilderSpec.parse("maximumSize=10"));
+
+    assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+
+    down.set(true);
+
+    for (int i=0;i<2;i++) {
+      assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    }
+
+    assertEquals(authenticator.getState(), CircuitBreakerAuthenticator.State.OPEN);
+    assertEquals(calls.get(), 3);
+
+    try {
+      authenticator.authenticate(new BasicCredentials("other", "foo"));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (AuthenticationUnavailableException e) {
+      assertEquals(calls.get(), 3);
+    }
+
+    assertEquals(authenticator.getStaleServedCount(), 2);
+    assertEquals(authenticator.getRejectedCount(), 1);
+
+    down.set(false);
+    Thread.sleep(60);
+
+    assertEquals(authenticator.authenticate(new BasicCredentials("other", "foo")), Optional.of("other"));
+    assertEquals(authenticator.getState(), CircuitBreakerAuthenticator.State.CLOSED);
+  }
+
+  @Test
+  public void testErrorInTrialCallReopens() throws Exception {
+    AtomicBoolean fail = new AtomicBoolean(true);
+
+    CircuitBreakerAuthenticator<BasicCredentials, String> authenticator = new CircuitBreakerAuthenticator<>(credentials -> {
+      if (fail.get()) throw new StackOverflowError();
+      return Optional.of(credentials.getUsername());
+    }, 0, 1, 50, TimeUnit.MILLISECONDS, null);
+
+    for (int i=0;i<2;i++) {
+      try {
+        if (i > 0) Thread.sleep(60);
+        authenticator.authenticate(new BasicCredentials("user", "foo"));
+        throw new AssertionError("Shouldn't succeed");
+      } catch (StackOverflowError e) {
+        assertEquals(authenticator.getState(), CircuitBreakerAuthenticator.State.OPEN);
+      }
+    }
+
+    fail.set(false);
+    Thread.sleep(60);
+
+    assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    assertEquals(authenticator.getState(), CircuitBreakerAuthenticator.State.CLOSED);
+  }
+
+  @Test
+  public void testOpenBreakerIs503() throws Exception {
+    AuthFilter<BasicCredentials, String> authFilter = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(backend)
+                                                                                                     .setCircuitBreaker(1, 1, TimeUnit.HOURS)
+                                                                                                     .setPrincipal(String.class)
+                                                                                                     .buildAuthFilter();
+
+    down.set(true);
+
+    assertEquals(authFilter.authenticate(request()), AuthResult.ERROR);
+
+    try {
+      authFilter.filter(request());
+      throw new AssertionError("Shouldn't succeed");
+    } catch (WebApplicationException wae) {
+      assertEquals(wae.getResponse().getStatus(), 503);
+      assertEquals(calls.get(), 1);
+    }
+  }
+
+  private static ContainerRequestContext request() {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    headers.add(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpmb28=");
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    return containerRequestContext;
+  }
+}
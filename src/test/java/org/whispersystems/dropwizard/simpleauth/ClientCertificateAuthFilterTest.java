@@ -0,0 +1,93 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.SecurityContext;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.AuthenticationException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ClientCertificateAuthFilterTest {
+
+  @Test
+  public void testClientCertificate() throws Exception {
+    CertificateAuthenticator authenticator = spy(new CertificateAuthenticator());
+    AuthFilter               authFilter    = new ClientCertificateAuthFilter.Builder<String>().setAuthenticator(authenticator)
+                                                                                              .setPrincipal(String.class)
+                                                                                              .buildAuthFilter();
+
+    X509Certificate certificate = certificate("service-a", System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+
+    for (int i=0;i<2;i++) {
+      ContainerRequestContext containerRequestContext = request(certificate);
+      authFilter.filter(containerRequestContext);
+
+      ArgumentCaptor<SecurityContext> captor = ArgumentCaptor.forClass(SecurityContext.class);
+      verify(containerRequestContext).setSecurityContext(captor.capture());
+      assertEquals(((AuthPrincipal) captor.getValue().getUserPrincipal()).getAuthenticated(), "service-a");
+      assertEquals(captor.getValue().getAuthenticationScheme(), SecurityContext.CLIENT_CERT_AUTH);
+      assertTrue(captor.getValue().isSecure());
+    }
+
+    verify(authenticator, times(1)).authenticate(any(X509Certificate[].class));
+  }
+
+  @Test
+  public void testRejectedCertificates() throws Exception {
+    AuthFilter authFilter = new ClientCertificateAuthFilter.Builder<String>().setAuthenticator(new CertificateAuthenticator())
+                                                                             .setPrincipal(String.class)
+                                                                             .buildAuthFilter();
+
+    ContainerRequestContext[] rejected = {request(null),
+                                          request(certificate("service-a", System.currentTimeMillis() - 1000)),
+                                          request(certificate("unknown", System.currentTimeMillis() + 60000))};
+
+    for (ContainerRequestContext containerRequestContext : rejected) {
+      try {
+        authFilter.filter(containerRequestContext);
+        throw new AssertionError("Shouldn't succeed");
+      } catch (WebApplicationException wae) {
+        verify(containerRequestContext, times(0)).setSecurityContext(any(SecurityContext.class));
+        assertEquals(wae.getResponse().getStatus(), 401);
+      }
+    }
+  }
+
+  private static X509Certificate certificate(String subject, long notAfter) throws Exception {
+    X509Certificate certificate = mock(X509Certificate.class);
+    when(certificate.getEncoded()).thenReturn(subject.getBytes());
+    when(certificate.getNotBefore()).thenReturn(new Date(0));
+    when(certificate.getNotAfter()).thenReturn(new Date(notAfter));
+    when(certificate.toString()).thenReturn(subject);
+
+    return certificate;
+  }
+
+  private static ContainerRequestContext request(X509Certificate certificate) {
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+
+    if (certificate != null) {
+      when(containerRequestContext.getProperty(ClientCertificateAuthFilter.CERTIFICATE_PROPERTY)).thenReturn(new X509Certificate[] {certificate});
+    }
+
+    return containerRequestContext;
+  }
+
+  private static class CertificateAuthenticator implements Authenticator<X509Certificate[], String> {
+    @Override
+    public Optional<String> authenticate(X509Certificate[] chain) throws AuthenticationException {
+      String subject = chain[0].toString();
+      return subject.startsWith("service-") ? Optional.of(subject) : Optional.empty();
+    }
+  }
+}
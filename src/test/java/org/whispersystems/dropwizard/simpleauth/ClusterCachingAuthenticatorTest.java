@@ -0,0 +1,124 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.cache.CacheBuilderSpec;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class ClusterCachingAuthenticatorTest {
+
+  private static final byte[] SALT = "shared-cluster-salt".getBytes();
+
+  @Test
+  public void testNodesShareResultsAndInvalidations() throws AuthenticationException {
+    InMemoryClusterAuthCache<String> cluster = new InMemoryClusterAuthCache<>(CacheBuilderSpec.parse("maximumSize=100"));
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> backend = mock(Authenticator.class);
+    when(backend.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+
+    Authenticator<BasicCredentials, String> node1 = node(backend, cluster);
+    Authenticator<BasicCredentials, String> node2 = node(backend, cluster);
+
+    assertEquals(node1.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    assertEquals(node2.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    assertEquals(node2.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    verify(backend, times(1)).authenticate(any(BasicCredentials.class));
+
+    cluster.invalidate("user");
+
+    assertEquals(cluster.size(), 0);
+    assertEquals(((CachingAuthenticator) node1).size(), 0);
+    assertEquals(((CachingAuthenticator) node2).size(), 0);
+
+    node2.authenticate(new BasicCredentials("user", "foo"));
+    verify(backend, times(2)).authenticate(any(BasicCredentials.class));
+  }
+
+  @Test
+  public void testInvalidationEvictsOtherNodesNearCache() throws AuthenticationException {
+    InMemoryClusterAuthCache<String> cluster = spy(new InMemoryClusterAuthCache<String>(CacheBuilderSpec.parse("maximumSize=100")));
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> backend = mock(Authenticator.class);
+    when(backend.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+
+    Authenticator<BasicCredentials, String> node1 = node(backend, cluster);
+    Authenticator<BasicCredentials, String> node2 = node(backend, cluster);
+
+    node2.authenticate(new BasicCredentials("user", "foo"));
+    node2.authenticate(new BasicCredentials("user", "foo"));
+    verify(cluster, times(1)).get(anyString());
+
+    // node1 publishes the invalidation, say after a password change it handled
+    node1.authenticate(new BasicCredentials("user", "foo"));
+    cluster.invalidate("user");
+
+    assertEquals(((CachingAuthenticator) node2).size(), 0);
+
+    node2.authenticate(new BasicCredentials("user", "foo"));
+    verify(cluster, times(3)).get(anyString());
+    verify(backend, times(2)).authenticate(any(BasicCredentials.class));
+  }
+
+  @Test
+  public void testClusterMissAndFill() throws AuthenticationException {
+    InMemoryClusterAuthCache<String> cluster = new InMemoryClusterAuthCache<>(CacheBuilderSpec.parse("maximumSize=100"));
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> backend = mock(Authenticator.class);
+    when(backend.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+    when(backend.authenticate(new BasicCredentials("user", "bar"))).thenReturn(Optional.empty());
+
+    ClusterCachingAuthenticator<BasicCredentials, String> node1 = new ClusterCachingAuthenticator<>(backend, cluster, ClusterCachingAuthenticator.digestedKeys(SALT));
+    ClusterCachingAuthenticator<BasicCredentials, String> node2 = new ClusterCachingAuthenticator<>(backend, cluster, ClusterCachingAuthenticator.digestedKeys(SALT));
+
+    assertEquals(node1.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    assertEquals(cluster.size(), 1);
+    assertEquals(node2.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+
+    assertEquals(node1.authenticate(new BasicCredentials("user", "bar")), Optional.empty());
+    assertEquals(node2.authenticate(new BasicCredentials("user", "bar")), Optional.empty());
+    assertEquals(cluster.size(), 1);
+
+    assertEquals(node1.getMissCount(), 2);
+    assertEquals(node2.getHitCount(), 1);
+    assertEquals(node2.getMissCount(), 1);
+    verify(backend, times(3)).authenticate(any(BasicCredentials.class));
+  }
+
+  @Test
+  public void testClusterErrorFallsThrough() throws AuthenticationException {
+    @SuppressWarnings("unchecked")
+    ClusterAuthCache<String> cluster = mock(ClusterAuthCache.class);
+    when(cluster.get(anyString())).thenThrow(new IllegalStateException("cluster down"));
+    doThrow(new IllegalStateException("cluster down")).when(cluster).put(anyString(), anyString());
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> backend = mock(Authenticator.class);
+    when(backend.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+
+    ClusterCachingAuthenticator<BasicCredentials, String> authenticator = new ClusterCachingAuthenticator<>(backend, cluster, ClusterCachingAuthenticator.digestedKeys(SALT));
+
+    for (int i=0;i<2;i++) {
+      assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    }
+
+    verify(backend, times(2)).authenticate(any(BasicCredentials.class));
+    assertEquals(authenticator.getMissCount(), 2);
+  }
+
+  private static Authenticator<BasicCredentials, String> node(Authenticator<BasicCredentials, String> backend, ClusterAuthCache<String> cluster) {
+    return new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(backend)
+                                                          .setClusterAuthCache(cluster, ClusterCachingAuthenticator.digestedKeys(SALT))
+                                                          .setAuthenticationCachePolicy(CacheBuilderSpec.parse("maximumSize=100"))
+                                                          .setPrincipal(String.class)
+                                                          .buildAuthFilter()
+                                                          .getAuthenticator();
+  }
+}
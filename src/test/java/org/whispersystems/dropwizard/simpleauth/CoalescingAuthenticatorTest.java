@@ -0,0 +1,134 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingAuthenticatorTest {
+
+  @Test
+  public void testConcurrentCallsShareLookup() throws Exception {
+    CountDownLatch  release  = new CountDownLatch(1);
+    AtomicInteger   lookups  = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    CoalescingAuthenticator<BasicCredentials, String> authenticator = new CoalescingAuthenticator<>(credentials -> {
+      lookups.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new AuthenticationException(e);
+      }
+      return Optional.of(credentials.getUsername());
+    }, 5, TimeUnit.SECONDS);
+
+    try {
+      List<Future<Optional<String>>> results = new ArrayList<>();
+
+      for (int i=0;i<8;i++) {
+        results.add(executor.submit(() -> authenticator.authenticate(new BasicCredentials("user", "foo"))));
+      }
+
+      while (authenticator.getCoalescedCount() < 7) Thread.sleep(1);
+      release.countDown();
+
+      for (Future<Optional<String>> result : results) {
+        assertEquals(result.get(), Optional.of("user"));
+      }
+
+      assertEquals(lookups.get(), 1);
+      assertEquals(authenticator.getCoalescedCount(), 7);
+      assertEquals(authenticator.getInFlightCount(), 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLeaderErrorReleasesWaiters() throws Exception {
+    CountDownLatch  release  = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    CoalescingAuthenticator<BasicCredentials, String> authenticator = new CoalescingAuthenticator<>(credentials -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new AuthenticationException(e);
+      }
+      throw new LinkageError("leader failed");
+    }, 1, TimeUnit.MINUTES);
+
+    try {
+      Future<Optional<String>> leader = executor.submit(() -> authenticator.authenticate(new BasicCredentials("user", "foo")));
+      while (authenticator.getInFlightCount() == 0) Thread.sleep(1);
+
+      Future<Optional<String>> waiter = executor.submit(() -> authenticator.authenticate(new BasicCredentials("user", "foo")));
+      while (authenticator.getCoalescedCount() == 0) Thread.sleep(1);
+
+      release.countDown();
+
+      try {
+        waiter.get(5, TimeUnit.SECONDS);
+        throw new AssertionError("Shouldn't succeed");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof AuthenticationException);
+      }
+
+      try {
+        leader.get(5, TimeUnit.SECONDS);
+        throw new AssertionError("Shouldn't succeed");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof LinkageError);
+      }
+
+      assertEquals(authenticator.getTimeoutCount(), 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWaitIsBounded() throws Exception {
+    CountDownLatch  release  = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    CoalescingAuthenticator<BasicCredentials, String> authenticator = new CoalescingAuthenticator<>(credentials -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new AuthenticationException(e);
+      }
+      return Optional.empty();
+    }, 10, TimeUnit.MILLISECONDS);
+
+    try {
+      executor.submit(() -> authenticator.authenticate(new BasicCredentials("user", "foo")));
+      while (authenticator.getInFlightCount() == 0) Thread.sleep(1);
+
+      try {
+        authenticator.authenticate(new BasicCredentials("user", "foo"));
+        throw new AssertionError("Shouldn't succeed");
+      } catch (AuthenticationException e) {
+        assertEquals(authenticator.getTimeoutCount(), 1);
+      }
+    } finally {
+      release.countDown();
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+  }
+}
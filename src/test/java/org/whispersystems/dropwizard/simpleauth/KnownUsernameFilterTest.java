@@ -0,0 +1,142 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Test;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class KnownUsernameFilterTest {
+
+  @Test
+  public void testKnownUsernameFilter() throws Exception {
+    List<String>        usernames     = new ArrayList<>(Collections.singletonList("user"));
+    KnownUsernameFilter knownUsers    = new KnownUsernameFilter(() -> usernames, 0.001, 1, TimeUnit.HOURS);
+    StringAuthenticator authenticator = spy(new StringAuthenticator());
+    AuthFilter          authFilter    = new BasicCredentialAuthFilter.Builder<String>().setAuthenticator(authenticator)
+                                                                                       .setCredentialPreFilter(knownUsers.forCredentials(BasicCredentials::getUsername))
+                                                                                       .setPrincipal(String.class)
+                                                                                       .setRealm("Hmm")
+                                                                                       .buildAuthFilter();
+
+    knownUsers.start();
+
+    try {
+      assertEquals(authFilter.authenticate(request("Basic dXNlcjpmb28=")), AuthResult.AUTHENTICATED);
+      assertEquals(authFilter.authenticate(request("Basic b3RoZXI6YmF6")), AuthResult.INVALID_CREDENTIALS);
+
+      verify(authenticator, times(1)).authenticate(any(BasicCredentials.class));
+      assertEquals(knownUsers.getRejectedCount(), 1);
+      assertEquals(knownUsers.getPassedCount(), 1);
+
+      usernames.add("other");
+      assertTrue(knownUsers.rebuild());
+      assertEquals(knownUsers.size(), 2);
+      assertEquals(knownUsers.getRebuildCount(), 2);
+      assertTrue(knownUsers.getBitSize() > 0);
+
+      assertEquals(authFilter.authenticate(request("Basic b3RoZXI6YmF6")), AuthResult.INVALID_CREDENTIALS);
+      verify(authenticator, times(2)).authenticate(any(BasicCredentials.class));
+    } finally {
+      knownUsers.stop();
+    }
+  }
+
+  @Test
+  public void testLoadedOnStart() {
+    List<String>        loads      = new ArrayList<>();
+    KnownUsernameFilter knownUsers = new KnownUsernameFilter(() -> {
+      loads.add("load");
+      return Collections.singletonList("user");
+    }, 0.001, 1, TimeUnit.HOURS);
+
+    assertTrue(loads.isEmpty());
+    assertTrue(knownUsers.test("anyone"));
+    assertEquals(knownUsers.size(), 0);
+
+    knownUsers.start();
+
+    try {
+      assertEquals(loads.size(), 1);
+      assertTrue(knownUsers.test("user"));
+      assertFalse(knownUsers.test("newcomer"));
+
+      knownUsers.add("newcomer");
+      assertTrue(knownUsers.test("newcomer"));
+    } finally {
+      knownUsers.stop();
+    }
+  }
+
+  @Test
+  public void testAddDuringRebuild() {
+    List<String>          usernames  = new ArrayList<>(Collections.singletonList("user"));
+    AtomicBoolean         storing    = new AtomicBoolean();
+    KnownUsernameFilter[] holder     = new KnownUsernameFilter[1];
+    KnownUsernameFilter   knownUsers = new KnownUsernameFilter(() -> {
+      List<String> loaded = new ArrayList<>(usernames);
+
+      // The user is stored and added after the source was read
+      if (storing.getAndSet(false)) {
+        usernames.add("newcomer");
+        holder[0].add("newcomer");
+      }
+
+      return loaded;
+    }, 0.001, 1, TimeUnit.HOURS);
+
+    holder[0] = knownUsers;
+    knownUsers.start();
+
+    try {
+      storing.set(true);
+      assertTrue(knownUsers.rebuild());
+      assertTrue(knownUsers.test("newcomer"));
+
+      assertTrue(knownUsers.rebuild());
+      assertTrue(knownUsers.test("newcomer"));
+
+      usernames.remove("newcomer");
+      assertTrue(knownUsers.rebuild());
+      assertFalse(knownUsers.test("newcomer"));
+    } finally {
+      knownUsers.stop();
+    }
+  }
+
+  private static ContainerRequestContext request(String authorization) {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    headers.add(HttpHeaders.AUTHORIZATION, authorization);
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+
+    return containerRequestContext;
+  }
+
+  private static class StringAuthenticator implements Authenticator<BasicCredentials, String> {
+    @Override
+    public Optional<String> authenticate(BasicCredentials credentials) throws AuthenticationException {
+      if (credentials.getUsername().equals("user") && credentials.getPassword().equals("foo")) {
+        return Optional.of("user");
+      }
+
+      return Optional.empty();
+    }
+  }
+}
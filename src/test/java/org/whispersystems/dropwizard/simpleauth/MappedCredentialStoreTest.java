@@ -0,0 +1,113 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedCredentialStoreTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLookupAndReload() throws Exception {
+    Path                path        = folder.getRoot().toPath().resolve("credentials");
+    Map<String, String> credentials = new HashMap<>();
+
+    for (int i=0;i<1000;i++) credentials.put("user" + i, "hash" + i);
+
+    MappedCredentialStore.write(path, credentials);
+    MappedCredentialStore store = new MappedCredentialStore(path, 1, TimeUnit.HOURS);
+
+    assertEquals(store.size(), 1000);
+    assertEquals(store.getPasswordHash("user0"), "hash0");
+    assertEquals(store.getPasswordHash("user999"), "hash999");
+    assertNull(store.getPasswordHash("user1000"));
+    assertFalse(store.reload());
+
+    credentials.clear();
+    credentials.put("ünïcode", "hash");
+
+    MappedCredentialStore.write(path, credentials);
+
+    assertTrue(store.reload());
+    assertEquals(store.size(), 1);
+    assertEquals(store.getPasswordHash("ünïcode"), "hash");
+    assertNull(store.getPasswordHash("user0"));
+    assertEquals(store.getReloadCount(), 1);
+  }
+
+  @Test
+  public void testCorruptRecordFailsReload() throws Exception {
+    Path                path        = folder.getRoot().toPath().resolve("credentials");
+    Map<String, String> credentials = new HashMap<>();
+
+    for (int i=0;i<10;i++) credentials.put("user" + i, "hash" + i);
+
+    MappedCredentialStore.write(path, credentials);
+    MappedCredentialStore store = new MappedCredentialStore(path, 1, TimeUnit.HOURS);
+
+    MappedCredentialStore.write(path, credentials);
+
+    ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+
+    for (int slot=16;slot<file.capacity();slot+=8) {
+      if (file.getInt(slot + 4) != 0) {
+        file.putInt(slot + 4, file.capacity());
+        break;
+      }
+    }
+
+    Files.write(path, file.array());
+
+    assertFalse(store.reload());
+    assertEquals(store.getPasswordHash("user0"), "hash0");
+    assertEquals(store.getReloadCount(), 0);
+
+    try {
+      new MappedCredentialStore(path, 1, TimeUnit.HOURS);
+      throw new AssertionError("Shouldn't load");
+    } catch (IOException e) {
+      // Good
+    }
+  }
+
+  @Test
+  public void testAuthenticator() throws Exception {
+    Path                 path   = folder.getRoot().toPath().resolve("credentials");
+    Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+    Map<String, String>  users  = new HashMap<>();
+
+    users.put("user", hasher.hash("foo"));
+    MappedCredentialStore.write(path, users);
+
+    PasswordVerifier verifier = new PasswordVerifier.Builder(hasher).setThreads(1).build();
+    verifier.start();
+
+    try {
+      MappedCredentialAuthenticator<String> authenticator =
+          new MappedCredentialAuthenticator<>(new MappedCredentialStore(path, 1, TimeUnit.HOURS), verifier, username -> username);
+
+      assertEquals(authenticator.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+      assertFalse(authenticator.authenticate(new BasicCredentials("user", "bar")).isPresent());
+      assertFalse(authenticator.authenticate(new BasicCredentials("nobody", "foo")).isPresent());
+    } finally {
+      verifier.stop();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.dropwizard.auth.AuthenticationException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PasswordVerifierTest {
+
+  @Test
+  public void testHasherFormats() {
+    PasswordHasher[] hashers = {new Pbkdf2PasswordHasher(1000), new BCryptPasswordHasher(4),
+                                new SCryptPasswordHasher(4, 8, 1), new Argon2PasswordHasher(64, 1, 1)};
+
+    for (PasswordHasher hasher : hashers) {
+      String encoded = hasher.hash("foo");
+
+      assertTrue(encoded, hasher.supports(encoded));
+      assertTrue(encoded, hasher.verify("foo", encoded));
+      assertFalse(encoded, hasher.verify("bar", encoded));
+      assertFalse(encoded, hasher.needsRehash(encoded));
+    }
+
+    assertTrue(new Pbkdf2PasswordHasher(2000).needsRehash(new Pbkdf2PasswordHasher(1000).hash("foo")));
+    assertTrue(new BCryptPasswordHasher(5).needsRehash(new BCryptPasswordHasher(4).hash("foo")));
+  }
+
+  @Test
+  public void testRehashLegacyFormat() throws Exception {
+    CountDownLatch          rehashed = new CountDownLatch(1);
+    AtomicReference<String> upgraded = new AtomicReference<>();
+
+    PasswordVerifier verifier = new PasswordVerifier.Builder(new Pbkdf2PasswordHasher(1000)).addLegacyHasher(new BCryptPasswordHasher(4))
+                                                                                             .setThreads(1)
+                                                                                             .setRehashListener((username, hash) -> {
+                                                                                               upgraded.set(hash);
+                                                                                               rehashed.countDown();
+                                                                                             })
+                                                                                             .build();
+
+    try {
+      String legacy = new BCryptPasswordHasher(4).hash("foo");
+
+      assertFalse(verifier.verify("user", "bar", legacy));
+      assertTrue(verifier.verify("user", "foo", legacy));
+      assertTrue(rehashed.await(5, TimeUnit.SECONDS));
+
+      assertTrue(upgraded.get().startsWith("$pbkdf2-sha256$"));
+      assertTrue(verifier.verify("user", "foo", upgraded.get()));
+      assertFalse(verifier.verify("user", "foo", "$unknown$format"));
+      assertEquals(verifier.getRehashedCount(), 1);
+    } finally {
+      verifier.stop();
+    }
+  }
+
+  @Test
+  public void testSaturatedPoolRejects() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean  block   = new AtomicBoolean();
+
+    PasswordHasher blocking = new Pbkdf2PasswordHasher(1000) {
+      @Override
+      public boolean verify(String password, String encodedHash) {
+        if (block.get()) Uninterruptibles.awaitUninterruptibly(release);
+        return super.verify(password, encodedHash);
+      }
+    };
+
+    PasswordVerifier verifier = new PasswordVerifier.Builder(blocking).setThreads(1)
+                                                                      .setQueueSize(1)
+                                                                      .setTimeout(50, TimeUnit.MILLISECONDS)
+                                                                      .build();
+
+    try {
+      String encoded = blocking.hash("foo");
+      block.set(true);
+
+      for (int i=0;i<2;i++) {
+        try {
+          verifier.verify("user", "foo", encoded);
+          throw new AssertionError("Shouldn't succeed");
+        } catch (AuthenticationException e) {
+          // first times out while running, second times out while queued
+        }
+      }
+
+      try {
+        verifier.verify("user", "foo", encoded);
+        throw new AssertionError("Shouldn't succeed");
+      } catch (AuthenticationException e) {
+        assertEquals(verifier.getRejectedCount(), 1);
+      }
+    } finally {
+      release.countDown();
+      verifier.stop();
+    }
+  }
+
+  @Test
+  public void testCalibrationIsDeferred() {
+    AtomicInteger hashes = new AtomicInteger();
+
+    PasswordHasher counting = new Pbkdf2PasswordHasher(1000) {
+      @Override
+      public String hash(String password) {
+        hashes.incrementAndGet();
+        return super.hash(password);
+      }
+    };
+
+    PasswordVerifier verifier = new PasswordVerifier.Builder(counting).build();
+
+    try {
+      assertEquals(hashes.get(), 0);
+
+      try {
+        verifier.rejectUnknownUser();
+        throw new AssertionError("Shouldn't succeed");
+      } catch (IllegalStateException e) {
+        assertEquals(hashes.get(), 0);
+      }
+
+      verifier.start();
+      assertEquals(hashes.get(), 1);
+
+      assertFalse(verifier.rejectUnknownUser());
+      assertEquals(hashes.get(), 1);
+    } finally {
+      verifier.stop();
+    }
+  }
+
+  @Test
+  public void testSuppliedExecutorIsNotShutDown() throws Exception {
+    ExecutorService  executor = Executors.newSingleThreadExecutor();
+    PasswordVerifier verifier = new PasswordVerifier.Builder(new Pbkdf2PasswordHasher(1000)).setExecutor(executor).build();
+
+    try {
+      verifier.start();
+      assertTrue(verifier.verify("user", "foo", new Pbkdf2PasswordHasher(1000).hash("foo")));
+      verifier.stop();
+
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
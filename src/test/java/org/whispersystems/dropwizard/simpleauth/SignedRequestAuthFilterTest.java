@@ -0,0 +1,139 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class SignedRequestAuthFilterTest {
+
+  private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes();
+
+  private final RequestSigner signer = new RequestSigner("service-a", KEY);
+
+  private final AuthFilter<RequestSignature, String> authFilter =
+      new SignedRequestAuthFilter.Builder<String>().setKeyResolver(keyId -> keyId.equals("service-a") ? KEY : null)
+                                                   .setAuthenticator(signature -> Optional.of(signature.getKeyId()))
+                                                   .setPrincipal(String.class)
+                                                   .buildAuthFilter();
+
+  @Test
+  public void testSignedRequests() throws IOException {
+    String                  date    = RequestSigner.date();
+    String                  digest  = RequestSigner.bodyDigest(new byte[0]);
+    ContainerRequestContext request = request("GET", "/v1/things?limit=10", date, digest, signer.sign("GET", "/v1/things?limit=10", date, digest), null);
+
+    assertEquals(authFilter.authenticate(request), AuthResult.AUTHENTICATED);
+    verify(request).setProperty(AuthFilter.PRINCIPAL_PROPERTY, "service-a");
+
+    String        stale  = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusHours(1));
+    RequestSigner forger = new RequestSigner("service-a", "fedcba9876543210fedcba9876543210".getBytes());
+    String        replay = signer.sign("GET", "/v1/things", date, digest);
+
+    assertEquals(authFilter.authenticate(request("GET", "/v1/things", date, digest, replay, null)), AuthResult.AUTHENTICATED);
+    assertEquals(authFilter.authenticate(request("GET", "/v1/things", date, digest, replay, null)), AuthResult.INVALID_CREDENTIALS);
+    assertEquals(authFilter.authenticate(request("DELETE", "/v1/things", date, digest, signer.sign("GET", "/v1/things", date, digest), null)), AuthResult.INVALID_CREDENTIALS);
+    assertEquals(authFilter.authenticate(request("GET", "/v1/things", stale, digest, signer.sign("GET", "/v1/things", stale, digest), null)), AuthResult.INVALID_CREDENTIALS);
+    assertEquals(authFilter.authenticate(request("GET", "/v1/things", date, digest, forger.sign("GET", "/v1/things", date, digest), null)), AuthResult.INVALID_CREDENTIALS);
+    assertEquals(authFilter.authenticate(request("GET", "/v1/things", date, digest, "Signature keyId=\"service-a\"", null)), AuthResult.MALFORMED_CREDENTIALS);
+  }
+
+  @Test
+  public void testStreamedBodyDigest() throws IOException {
+    byte[] body   = "{\"name\":\"thing\"}".getBytes(StandardCharsets.UTF_8);
+    String date   = RequestSigner.date();
+    String digest = RequestSigner.bodyDigest(body);
+
+    ContainerRequestContext request = request("POST", "/v1/things", date, digest, signer.sign("POST", "/v1/things", date, digest), body);
+    assertEquals(authFilter.authenticate(request), AuthResult.AUTHENTICATED);
+    assertEquals(entityStream(request).skip(-1), 0);
+    assertArrayEquals(ByteStreams.toByteArray(entityStream(request)), body);
+
+    byte[]                  tampered = "{\"name\":\"other\"}".getBytes(StandardCharsets.UTF_8);
+    ContainerRequestContext forged   = request("POST", "/v1/things", date, digest, signer.sign("POST", "/v1/things", date, digest), tampered);
+    assertEquals(authFilter.authenticate(forged), AuthResult.AUTHENTICATED);
+
+    try {
+      ByteStreams.toByteArray(entityStream(forged));
+      throw new AssertionError("Shouldn't succeed");
+    } catch (WebApplicationException wae) {
+      assertEquals(wae.getResponse().getStatus(), 401);
+    }
+  }
+
+  @Test
+  public void testUnknownKeysDontEvictKnownKeys() throws IOException {
+    Map<String, Integer> lookups = new HashMap<>();
+
+    AuthFilter<RequestSignature, String> authFilter =
+        new SignedRequestAuthFilter.Builder<String>().setKeyResolver(keyId -> {
+                                                       lookups.merge(keyId, 1, Integer::sum);
+                                                       return keyId.equals("service-a") ? KEY : null;
+                                                     })
+                                                     .setKeyCachePolicy(CacheBuilderSpec.parse("maximumSize=1"))
+                                                     .setAuthenticator(signature -> Optional.of(signature.getKeyId()))
+                                                     .setPrincipal(String.class)
+                                                     .buildAuthFilter();
+
+    String date   = RequestSigner.date();
+    String digest = RequestSigner.bodyDigest(new byte[0]);
+
+    for (int i=0;i<10;i++) {
+      RequestSigner unknown = new RequestSigner("unknown-" + (i % 5), KEY);
+
+      assertEquals(authFilter.authenticate(request("GET", "/v1/things", date, digest, signer.sign("GET", "/v1/things", date, digest), null)), AuthResult.AUTHENTICATED);
+      assertEquals(authFilter.authenticate(request("GET", "/v1/things", date, digest, unknown.sign("GET", "/v1/things", date, digest), null)), AuthResult.INVALID_CREDENTIALS);
+    }
+
+    assertEquals(lookups.get("service-a"), Integer.valueOf(1));
+    assertEquals(lookups.get("unknown-0"), Integer.valueOf(1));
+  }
+
+  private static InputStream entityStream(ContainerRequestContext request) {
+    ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+    verify(request).setEntityStream(captor.capture());
+    return captor.getValue();
+  }
+
+  private static ContainerRequestContext request(String method, String pathAndQuery, String date, String digest, String authorization, byte[] body) {
+    MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+    headers.add(HttpHeaders.AUTHORIZATION, authorization);
+    headers.add(HttpHeaders.DATE, date);
+    headers.add(RequestSigner.CONTENT_SHA256, digest);
+
+    UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getRequestUri()).thenReturn(URI.create("https://example.com" + pathAndQuery));
+
+    ContainerRequestContext containerRequestContext = mock(ContainerRequestContext.class);
+    when(containerRequestContext.getHeaders()).thenReturn(headers);
+    when(containerRequestContext.getMethod()).thenReturn(method);
+    when(containerRequestContext.getUriInfo()).thenReturn(uriInfo);
+    when(containerRequestContext.hasEntity()).thenReturn(body != null);
+    when(containerRequestContext.getEntityStream()).thenReturn(body == null ? null : new ByteArrayInputStream(body));
+
+    return containerRequestContext;
+  }
+}
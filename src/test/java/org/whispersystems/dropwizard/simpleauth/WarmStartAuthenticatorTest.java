@@ -0,0 +1,199 @@
+package org.whispersystems.dropwizard.simpleauth;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.*;
+
+public class WarmStartAuthenticatorTest {
+
+  private static final byte[] SALT = "0123456789abcdef".getBytes();
+
+  private static final PrincipalCodec<String> CODEC = new PrincipalCodec<String>() {
+    @Override
+    public byte[] encode(String principal) {
+      return principal.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(byte[] encoded) {
+      return new String(encoded, StandardCharsets.UTF_8);
+    }
+  };
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSnapshotSurvivesRestart() throws Exception {
+    Path snapshot = folder.getRoot().toPath().resolve("auth.snapshot");
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> underlying = mock(Authenticator.class);
+
+    for (int i=0;i<100;i++) {
+      when(underlying.authenticate(new BasicCredentials("user" + i, "foo"))).thenReturn(Optional.of("user" + i));
+    }
+
+    when(underlying.authenticate(new BasicCredentials("user0", "bar"))).thenReturn(Optional.empty());
+
+    WarmStartAuthenticator<BasicCredentials, String> first = build(underlying, snapshot);
+    first.start();
+
+    for (int i=0;i<100;i++) {
+      assertEquals(first.authenticate(new BasicCredentials("user" + i, "foo")), Optional.of("user" + i));
+    }
+
+    assertEquals(first.getSnapshotSize(), 0);
+    first.stop();
+    assertEquals(first.getSnapshotCount(), 1);
+    assertEquals(folder.getRoot().list().length, 1);
+
+    if (snapshot.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      assertEquals(Files.getPosixFilePermissions(snapshot), EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+    }
+
+    WarmStartAuthenticator<BasicCredentials, String> second = build(underlying, snapshot);
+    second.start();
+
+    assertEquals(second.getSnapshotSize(), 100);
+
+    for (int i=0;i<100;i++) {
+      assertEquals(second.authenticate(new BasicCredentials("user" + i, "foo")), Optional.of("user" + i));
+    }
+
+    assertEquals(second.authenticate(new BasicCredentials("user0", "bar")), Optional.empty());
+
+    verify(underlying, times(101)).authenticate(any(BasicCredentials.class));
+    assertEquals(second.getWarmHitCount(), 100);
+    assertEquals(second.getWarmMissCount(), 1);
+
+    second.stop();
+  }
+
+  @Test
+  public void testExpiryAcrossRestart() throws Exception {
+    Path snapshot = folder.getRoot().toPath().resolve("auth.snapshot");
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> underlying = mock(Authenticator.class);
+    when(underlying.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+
+    WarmStartAuthenticator<BasicCredentials, String> first = build(underlying, snapshot, CODEC, 500);
+    first.start();
+    assertEquals(first.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    first.stop();
+
+    WarmStartAuthenticator<BasicCredentials, String> second = build(underlying, snapshot, CODEC, 500);
+    second.start();
+    assertEquals(second.getSnapshotSize(), 1);
+
+    Thread.sleep(600);
+
+    for (int i=0;i<2;i++) {
+      assertEquals(second.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    }
+
+    verify(underlying, times(2)).authenticate(any(BasicCredentials.class));
+    assertEquals(second.getSnapshotSize(), 0);
+    assertEquals(second.getWarmHitCount(), 0);
+    assertEquals(second.getWarmMissCount(), 0);
+
+    second.invalidateAll();
+    assertFalse(Files.exists(snapshot));
+  }
+
+  @Test
+  public void testInvalidatedDuringLookup() throws Exception {
+    Path snapshot = folder.getRoot().toPath().resolve("auth.snapshot");
+
+    @SuppressWarnings("unchecked")
+    WarmStartAuthenticator<BasicCredentials, String>[] holder     = new WarmStartAuthenticator[1];
+    Authenticator<BasicCredentials, String>            underlying = spy(new Authenticator<BasicCredentials, String>() {
+      @Override
+      public Optional<String> authenticate(BasicCredentials credentials) {
+        // The password changes while this lookup is in flight
+        holder[0].invalidateAll();
+        return Optional.of(credentials.getUsername());
+      }
+    });
+
+    holder[0] = build(underlying, snapshot);
+
+    assertEquals(holder[0].authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    assertEquals(holder[0].authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+
+    verify(underlying, times(2)).authenticate(any(BasicCredentials.class));
+  }
+
+  @Test
+  public void testCorruptSnapshot() throws Exception {
+    Path snapshot = folder.getRoot().toPath().resolve("auth.snapshot");
+
+    @SuppressWarnings("unchecked")
+    Authenticator<BasicCredentials, String> underlying = mock(Authenticator.class);
+    when(underlying.authenticate(new BasicCredentials("user", "foo"))).thenReturn(Optional.of("user"));
+
+    WarmStartAuthenticator<BasicCredentials, String> first = build(underlying, snapshot);
+    first.start();
+    assertEquals(first.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    first.stop();
+
+    PrincipalCodec<String> failing = new PrincipalCodec<String>() {
+      @Override
+      public byte[] encode(String principal) {
+        return CODEC.encode(principal);
+      }
+
+      @Override
+      public String decode(byte[] encoded) {
+        throw new IllegalArgumentException("Bad principal");
+      }
+    };
+
+    WarmStartAuthenticator<BasicCredentials, String> undecodable = build(underlying, snapshot, failing, TimeUnit.MINUTES.toMillis(10));
+    undecodable.start();
+    assertEquals(undecodable.getSnapshotSize(), 1);
+    assertEquals(undecodable.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+    assertEquals(undecodable.getSnapshotSize(), 0);
+
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+      channel.write((ByteBuffer) ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).flip(), 16 + 32 + 8);
+    }
+
+    WarmStartAuthenticator<BasicCredentials, String> corrupt = build(underlying, snapshot);
+    corrupt.start();
+    assertEquals(corrupt.getSnapshotSize(), 0);
+    assertEquals(corrupt.authenticate(new BasicCredentials("user", "foo")), Optional.of("user"));
+
+    verify(underlying, times(3)).authenticate(any(BasicCredentials.class));
+  }
+
+  private static WarmStartAuthenticator<BasicCredentials, String> build(Authenticator<BasicCredentials, String> underlying, Path snapshot) {
+    return build(underlying, snapshot, CODEC, TimeUnit.MINUTES.toMillis(10));
+  }
+
+  private static WarmStartAuthenticator<BasicCredentials, String> build(Authenticator<BasicCredentials, String> underlying, Path snapshot,
+                                                                        PrincipalCodec<String> codec, long timeToLiveMillis)
+  {
+    return new WarmStartAuthenticator.Builder<>(underlying, WarmStartAuthenticator.digestedKeys(SALT), codec, snapshot)
+        .setTimeToLive(timeToLiveMillis, TimeUnit.MILLISECONDS)
+        .setSnapshotInterval(1, TimeUnit.HOURS)
+        .build();
+  }
+}